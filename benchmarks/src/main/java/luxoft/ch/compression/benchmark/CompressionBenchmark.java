@@ -0,0 +1,108 @@
+package luxoft.ch.compression.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import luxoft.ch.compression.tool.CompressionLevel;
+import luxoft.ch.compression.tool.CompressionOptions;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+
+/**
+ * File to file compression and decompression of multi-block inputs. The
+ * {@code megabytes} counter gives the throughput in MB/s of source data, or of
+ * compressed data for {@code verify}; the compression ratio of every corpus is
+ * printed once per trial. {@code threads} applies to both compression and
+ * {@code decompressTo}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx4g", "-Dfile.encoding=UTF-8" })
+public class CompressionBenchmark {
+
+	@Param({ Corpus.REAL, Corpus.LOGS, Corpus.RANDOM })
+	private String corpus;
+
+	@Param({ "4194304", "16777216" })
+	private int size;
+
+	@Param({ "1" })
+	private int threads;
+
+	@Param({ "FAST", "GREEDY", "OPTIMAL" })
+	private CompressionLevel level;
+
+	@Param({ "false", "true" })
+	private boolean entropyCoded;
+
+	private Path sourceFile;
+	private Path compressedFile;
+	private Path decompressedFile;
+	private long sourceSize;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		sourceFile = Files.createTempFile("benchmark", ".txt");
+		Files.writeString(sourceFile, Corpus.generate(corpus, size));
+		sourceSize = Files.size(sourceFile);
+		compressedFile = Files.createTempFile("benchmark", ".data");
+		decompressedFile = Files.createTempFile("benchmark", ".out");
+		compress(new Throughput());
+		System.out.printf("%n%s corpus of %d chars at %s level%s: compression ratio %.3f%n", corpus, size, level,
+				entropyCoded ? " with entropy coding" : "", (double) Files.size(compressedFile) / sourceSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(sourceFile);
+		Files.deleteIfExists(compressedFile);
+		Files.deleteIfExists(decompressedFile);
+	}
+
+	@Benchmark
+	public void compress(Throughput throughput) {
+		throughput.add(sourceSize);
+		new Compressor(sourceFile.toString(), CompressionOptions.DEFAULT.withThreads(threads).withLevel(level)
+				.withEntropyCoded(entropyCoded)).compress(compressedFile.toString());
+	}
+
+	@Benchmark
+	public void decompress(Throughput throughput) {
+		throughput.add(sourceSize);
+		Decompressor decompressor = new Decompressor(compressedFile.toString());
+		decompressor.decompress();
+		decompressor.save(decompressedFile.toString());
+	}
+
+	@Benchmark
+	public void decompressTo(Throughput throughput) {
+		throughput.add(sourceSize);
+		new Decompressor(compressedFile.toString()).decompressTo(decompressedFile.toString(), threads);
+	}
+
+	@Benchmark
+	public int verify(Throughput throughput) throws IOException {
+		throughput.add(Files.size(compressedFile));
+		return new Decompressor(compressedFile.toString()).verify();
+	}
+
+}
@@ -0,0 +1,73 @@
+package luxoft.ch.compression.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+final class Corpus {
+
+	static final String REAL_SAMPLE = "../real-sample.txt";
+
+	static final String REAL = "real";
+	static final String LOGS = "logs";
+	static final String RANDOM = "random";
+
+	private static final String[] LOG_LEVELS = { "INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR" };
+	private static final String[] LOG_MESSAGES = { "request %d served in %d ms", "session %d opened for user %d",
+			"cache miss for key %d, loading from store in %d ms", "retrying connection %d after %d ms",
+			"transaction %d committed with %d rows" };
+
+	private Corpus() {
+	}
+
+	static String generate(String type, int size) {
+		return switch (type) {
+		case REAL -> replicate(REAL_SAMPLE, size);
+		case LOGS -> logs(size);
+		case RANDOM -> random(size);
+		default -> throw new IllegalArgumentException("unknown corpus type %s".formatted(type));
+		};
+	}
+
+	static String replicate(String fileName, int size) {
+		try {
+			final String sample = Files.readString(Paths.get(fileName), StandardCharsets.UTF_8);
+			StringBuilder builder = new StringBuilder(size);
+			while (builder.length() < size) {
+				builder.append(sample, 0, Math.min(sample.length(), size - builder.length()));
+			}
+			return builder.toString();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String logs(int size) {
+		Random random = new Random(size);
+		StringBuilder builder = new StringBuilder(size + 256);
+		long timestamp = 1_660_000_000_000L;
+		while (builder.length() < size) {
+			timestamp += random.nextInt(1000);
+			builder.append(timestamp).append(" [worker-").append(random.nextInt(8)).append("] ")
+					.append(LOG_LEVELS[random.nextInt(LOG_LEVELS.length)]).append(" luxoft.ch.service.Handler - ")
+					.append(LOG_MESSAGES[random.nextInt(LOG_MESSAGES.length)].formatted(random.nextInt(100_000),
+							random.nextInt(500)))
+					.append('\n');
+		}
+		builder.setLength(size);
+		return builder.toString();
+	}
+
+	private static String random(int size) {
+		Random random = new Random(size);
+		char[] text = new char[size];
+		for (int index = 0; index < size; index++) {
+			text[index] = (char) (' ' + random.nextInt('~' - ' ' + 1));
+		}
+		return String.valueOf(text);
+	}
+
+}
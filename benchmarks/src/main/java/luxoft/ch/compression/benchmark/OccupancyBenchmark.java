@@ -0,0 +1,111 @@
+package luxoft.ch.compression.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import luxoft.ch.compression.model.Stash;
+
+/**
+ * Overlap checks against a stash filled from {@code real-sample.txt} replicated
+ * up to {@code sizeMb} megabytes. Every line of the corpus acts as a token
+ * whose entries are accepted greedily, the way {@code Compressor} does it.
+ * {@code probe} should stay flat as the size grows, {@code select} should grow
+ * linearly with the number of candidates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g", "-Dfile.encoding=UTF-8" })
+public class OccupancyBenchmark {
+
+	private static final int MIN_TOKEN_LENGTH = 10;
+	private static final int PROBE_COUNT = 1 << 16;
+
+	@Param({ "1", "10", "100" })
+	private int sizeMb;
+
+	@Param({ Corpus.REAL_SAMPLE })
+	private String corpus;
+
+	private List<Entry<String, List<Integer>>> candidates;
+	private Stash stash;
+	private int[] probeStarts;
+	private int[] probeEnds;
+	private int probe;
+
+	@Setup(Level.Trial)
+	public void setUpCandidates() {
+		final String text = Corpus.replicate(corpus, sizeMb * 1024 * 1024);
+		Map<String, List<Integer>> lines = new HashMap<>();
+		int start = 0;
+		for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+			if (end - start >= MIN_TOKEN_LENGTH) {
+				lines.computeIfAbsent(text.substring(start, end), key -> new ArrayList<>()).add(start);
+			}
+			start = end + 1;
+		}
+		candidates = new ArrayList<>(lines.entrySet());
+		candidates.sort(Comparator.comparingInt(OccupancyBenchmark::getTokenTotalSpace).reversed());
+		stash = select();
+		Random random = new Random(sizeMb);
+		probeStarts = new int[PROBE_COUNT];
+		probeEnds = new int[PROBE_COUNT];
+		for (int index = 0; index < PROBE_COUNT; index++) {
+			var candidate = candidates.get(random.nextInt(candidates.size()));
+			probeStarts[index] = candidate.getValue().get(random.nextInt(candidate.getValue().size()));
+			probeEnds[index] = probeStarts[index] + candidate.getKey().length() - 1;
+		}
+	}
+
+	private static int getTokenTotalSpace(Entry<String, List<Integer>> entry) {
+		return entry.getKey().length() * entry.getValue().size();
+	}
+
+	@Benchmark
+	public boolean probe() {
+		probe = (probe + 1) & (PROBE_COUNT - 1);
+		return stash.isTokenEntryMayBeApplied(probeStarts[probe], probeEnds[probe]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Stash select() {
+		Stash selected = new Stash();
+		List<Integer> indices = new ArrayList<>();
+		for (var candidate : candidates) {
+			indices.clear();
+			for (var startPosition : candidate.getValue()) {
+				if (selected.isTokenEntryMayBeApplied(startPosition, startPosition + candidate.getKey().length() - 1)) {
+					indices.add(startPosition);
+				}
+			}
+			if (indices.size() >= 2) {
+				selected.add(candidate.getKey(), indices);
+			}
+		}
+		return selected;
+	}
+
+}
@@ -0,0 +1,147 @@
+package luxoft.ch.compression.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import luxoft.ch.compression.format.ContainerReader;
+import luxoft.ch.compression.format.ContainerWriter;
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.Stash;
+import luxoft.ch.compression.model.SuffixArrayTokenDiscovery;
+import luxoft.ch.compression.model.TokenTable;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+import luxoft.ch.compression.tool.GreedyTokenSelector;
+
+/**
+ * Every compression and decompression phase of a single block over real text,
+ * repetitive logs and random text. The {@code megabytes} counter gives the
+ * throughput in MB/s; add {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-Dfile.encoding=UTF-8" })
+public class PhaseBenchmark {
+
+	@Param({ Corpus.REAL, Corpus.LOGS, Corpus.RANDOM })
+	private String corpus;
+
+	@Param({ "262144", "1048576" })
+	private int size;
+
+	private String text;
+	private Dictionary dictionary;
+	private Stash stash;
+	private byte[] container;
+	private Path compressedFile;
+	private Path decompressedFile;
+	private Decompressor decompressor;
+	private final GreedyTokenSelector tokenSelector = new GreedyTokenSelector(2);
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		text = Corpus.generate(corpus, size);
+		dictionary = newDictionary();
+		dictionary.growLargerTokens();
+		Path sourceFile = Files.createTempFile("benchmark", ".txt");
+		Files.writeString(sourceFile, text);
+		compressedFile = Files.createTempFile("benchmark", ".data");
+		decompressedFile = Files.createTempFile("benchmark", ".out");
+		Compressor compressor = new Compressor(sourceFile.toString());
+		compressor.compress();
+		compressor.save(compressedFile.toString());
+		final long sourceSize = Files.size(sourceFile);
+		Files.delete(sourceFile);
+		container = Files.readAllBytes(compressedFile);
+		try (ContainerReader reader = new ContainerReader(
+				Channels.newChannel(new ByteArrayInputStream(container)))) {
+			stash = reader.read();
+		}
+		decompressor = new Decompressor(compressedFile.toString());
+		decompressor.decompress();
+		System.out.printf("%n%s corpus of %d chars: compression ratio %.3f%n", corpus, size,
+				(double) container.length / sourceSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(compressedFile);
+		Files.deleteIfExists(decompressedFile);
+	}
+
+	private Dictionary newDictionary() throws IOException {
+		Dictionary blockDictionary = new Dictionary(new SuffixArrayTokenDiscovery(), size);
+		blockDictionary.initialize(new StringReader(text));
+		return blockDictionary;
+	}
+
+	@Benchmark
+	public Dictionary initialize(Throughput throughput) throws IOException {
+		throughput.add(size);
+		return newDictionary();
+	}
+
+	@Benchmark
+	public TokenTable growLargerTokens(Throughput throughput) throws IOException {
+		throughput.add(size);
+		Dictionary blockDictionary = newDictionary();
+		blockDictionary.growLargerTokens();
+		return blockDictionary.getTokenTable();
+	}
+
+	@Benchmark
+	public Stash formSetOfTokensAndChain(Throughput throughput) {
+		throughput.add(size);
+		Stash selected = new Stash();
+		tokenSelector.formSetOfTokensAndChain(dictionary, selected);
+		return selected;
+	}
+
+	@Benchmark
+	public void writeStash(Throughput throughput) throws IOException {
+		throughput.add(size);
+		try (ContainerWriter writer = new ContainerWriter(Channels.newChannel(OutputStream.nullOutputStream()))) {
+			writer.write(stash);
+			writer.finish();
+		}
+	}
+
+	@Benchmark
+	public Stash readStash(Throughput throughput) throws IOException {
+		throughput.add(size);
+		try (ContainerReader reader = new ContainerReader(
+				Channels.newChannel(new ByteArrayInputStream(container)))) {
+			return reader.read();
+		}
+	}
+
+	@Benchmark
+	public void save(Throughput throughput) {
+		throughput.add(size);
+		decompressor.save(decompressedFile.toString());
+	}
+
+}
@@ -0,0 +1,67 @@
+package luxoft.ch.compression.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.GrowingTokenDiscovery;
+import luxoft.ch.compression.model.SuffixArrayTokenDiscovery;
+import luxoft.ch.compression.model.TokenDiscovery;
+import luxoft.ch.compression.model.TokenTable;
+
+/**
+ * Token discovery of a whole block. Run with {@code -prof gc} to compare the
+ * allocation rate and the churn of the boxed, String keyed grower against the
+ * primitive suffix array engine filling a {@code TokenTable}. Sizes stay within
+ * the corpus: replicated text makes the grower run one round per char of the
+ * copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-Dfile.encoding=UTF-8" })
+public class TokenDiscoveryBenchmark {
+
+	@Param({ "32768", "115472" })
+	private int size;
+
+	@Param({ "growing", "suffixArray" })
+	private String engine;
+
+	@Param({ Corpus.REAL_SAMPLE })
+	private String corpus;
+
+	private String text;
+	private TokenDiscovery tokenDiscovery;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		text = Corpus.replicate(corpus, size);
+		tokenDiscovery = "growing".equals(engine) ? new GrowingTokenDiscovery() : new SuffixArrayTokenDiscovery();
+	}
+
+	@Benchmark
+	public TokenTable discover() throws IOException {
+		Dictionary dictionary = new Dictionary(tokenDiscovery, size);
+		dictionary.initialize(new StringReader(text));
+		dictionary.growLargerTokens();
+		return dictionary.getTokenTable();
+	}
+
+}
@@ -23,6 +23,8 @@ public class Driver {
 		Decompressor decompressor = new Decompressor("compressed.data");
 		decompressor.decompress();
 		decompressor.save("uncompressed.data");
+		System.out.println("compression: " + compressor.getMetrics());
+		System.out.println("decompression: " + decompressor.getMetrics());
 	}
 
 }
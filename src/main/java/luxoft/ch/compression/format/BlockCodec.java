@@ -0,0 +1,164 @@
+package luxoft.ch.compression.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.model.Stash;
+
+final class BlockCodec {
+
+	private BlockCodec() {
+	}
+
+	static void encode(Stash stash, BlockEncoder encoder, SharedDictionary dictionary, TokenGrammar grammar) {
+		List<String> localTokens = new ArrayList<>();
+		for (var entry : stash) {
+			if (dictionary == null || dictionary.indexOf(entry.getKey()) < 0) {
+				localTokens.add(entry.getKey());
+			}
+		}
+		Map<String, Integer> tokenIds = new HashMap<>();
+		encoder.writeVarInt(localTokens.size());
+		for (var token : localTokens) {
+			tokenIds.put(token, tokenIds.size());
+		}
+		if (grammar != null) {
+			encodeGrammar(localTokens, encoder, grammar);
+		} else {
+			for (var token : localTokens) {
+				encoder.writeText(token);
+			}
+			encoder.endSection();
+		}
+		encoder.writeVarInt(stash.getStatistics().entryCount());
+		for (var tokenIter = stash.getReferencedTokensIterator(); tokenIter.hasNext();) {
+			final String token = tokenIter.next();
+			final Integer tokenId = tokenIds.get(token);
+			encoder.writeVarInt(tokenId != null ? tokenId : localTokens.size() + dictionary.indexOf(token));
+		}
+		encoder.endSection();
+		for (var rangeIter = stash.getUncompressedRangesIterator(); rangeIter.hasNext();) {
+			encoder.writeText(rangeIter.next());
+		}
+		encoder.endSection();
+	}
+
+	/**
+	 * Writes the token lengths followed by the token texts compressed as a nested
+	 * block, whose own sections keep rule texts, rule references and gaps apart.
+	 */
+	private static void encodeGrammar(List<String> tokens, BlockEncoder encoder, TokenGrammar grammar) {
+		StringBuilder tokenTable = new StringBuilder();
+		for (var token : tokens) {
+			encoder.writeVarInt(token.length());
+			tokenTable.append(token);
+		}
+		final Stash rules = grammar.derive(tokenTable);
+		if (rules.getCharCount() != tokenTable.length()) {
+			throw new CompressionException("token grammar covers %d of %d chars".formatted(rules.getCharCount(),
+					tokenTable.length()));
+		}
+		encode(rules, encoder, null, null);
+	}
+
+	static Stash decode(ByteBuffer data, boolean byteLevel, SharedDictionary dictionary, boolean hierarchical,
+			int charCount) {
+		BlockDecoder decoder = new BlockDecoder(data, byteLevel);
+		Stash stash = decode(decoder, data, dictionary, hierarchical, charCount);
+		if (decoder.hasRemaining()) {
+			throw new CompressionException("unexpected trailing data in compressed block");
+		}
+		return stash;
+	}
+
+	private static Stash decode(BlockDecoder decoder, ByteBuffer data, SharedDictionary dictionary,
+			boolean hierarchical, int charCount) {
+		final int localTokenCount = decoder.readVarInt();
+		if (localTokenCount > data.remaining()) {
+			throw new CompressionException("token count %d exceeds compressed block".formatted(localTokenCount));
+		}
+		String[] tokens = new String[localTokenCount + (dictionary == null ? 0 : dictionary.size())];
+		if (hierarchical) {
+			decodeGrammar(decoder, data, tokens, localTokenCount, charCount);
+		} else {
+			for (int tokenId = 0; tokenId < localTokenCount; tokenId++) {
+				tokens[tokenId] = String.valueOf(decoder.readText());
+			}
+		}
+		for (int tokenId = localTokenCount; tokenId < tokens.length; tokenId++) {
+			tokens[tokenId] = dictionary.getToken(tokenId - localTokenCount);
+		}
+		int[] references = new int[decoder.readVarInt()];
+		int[] entryCounts = new int[tokens.length];
+		for (int index = 0; index < references.length; index++) {
+			references[index] = decoder.readVarInt();
+			if (references[index] >= tokens.length) {
+				throw new CompressionException("wrong token reference %d".formatted(references[index]));
+			}
+			entryCounts[references[index]]++;
+		}
+		int[][] entries = new int[tokens.length][];
+		for (int tokenId = 0; tokenId < tokens.length; tokenId++) {
+			if (entryCounts[tokenId] > 0) {
+				entries[tokenId] = new int[entryCounts[tokenId]];
+				entryCounts[tokenId] = 0;
+			}
+		}
+		List<char[]> uncompressedRanges = new ArrayList<>(references.length + 1);
+		int position = 0;
+		for (int index = 0; index <= references.length; index++) {
+			char[] range = decoder.readText();
+			uncompressedRanges.add(range);
+			position += range.length;
+			if (index < references.length) {
+				final int tokenId = references[index];
+				entries[tokenId][entryCounts[tokenId]++] = position;
+				position += tokens[tokenId].length();
+			}
+		}
+		Stash stash = new Stash();
+		for (int tokenId = 0; tokenId < tokens.length; tokenId++) {
+			if (entries[tokenId] != null) {
+				stash.add(tokens[tokenId], entries[tokenId]);
+			}
+		}
+		stash.addUncompressedData(uncompressedRanges);
+		return stash;
+	}
+
+	private static void decodeGrammar(BlockDecoder decoder, ByteBuffer data, String[] tokens, int tokenCount,
+			int charCount) {
+		int[] lengths = new int[tokenCount];
+		long tableLength = 0;
+		for (int tokenId = 0; tokenId < tokenCount; tokenId++) {
+			lengths[tokenId] = decoder.readVarInt();
+			if (lengths[tokenId] > charCount) {
+				throw new CompressionException("token %d exceeds its block".formatted(tokenId));
+			}
+			tableLength += lengths[tokenId];
+		}
+		final Stash rules = decode(decoder, data, null, false, charCount);
+		if (rules.getCharCount() != tableLength) {
+			throw new CompressionException("token grammar holds %d chars instead of %d".formatted(
+					rules.getCharCount(), tableLength));
+		}
+		StringBuilder tokenTable = new StringBuilder(rules.getCharCount());
+		try {
+			rules.appendTo(tokenTable, 0, rules.getCharCount());
+		} catch (IOException e) {
+			throw new CompressionException("cannot expand token grammar", e);
+		}
+		int start = 0;
+		for (int tokenId = 0; tokenId < tokenCount; tokenId++) {
+			tokens[tokenId] = tokenTable.substring(start, start + lengths[tokenId]);
+			start += lengths[tokenId];
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package luxoft.ch.compression.format;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import luxoft.ch.compression.CompressionException;
+
+final class BlockDecoder {
+
+	private static final int MAX_VARINT_SHIFT = 28;
+
+	private final ByteBuffer data;
+	private final boolean byteLevel;
+
+	BlockDecoder(ByteBuffer data, boolean byteLevel) {
+		this.data = data;
+		this.byteLevel = byteLevel;
+	}
+
+	int readByte() {
+		try {
+			return data.get() & 0xFF;
+		} catch (BufferUnderflowException e) {
+			throw new CompressionException("unexpected end of compressed block", e);
+		}
+	}
+
+	int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+			final int current = readByte();
+			value |= (current & 0x7F) << shift;
+			if ((current & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new CompressionException("malformed variable length integer in compressed block");
+	}
+
+	char[] readText() {
+		final int length = readVarInt();
+		if (length > data.remaining()) {
+			throw new CompressionException("text length %d exceeds compressed block".formatted(length));
+		}
+		char[] text = new char[length];
+		for (int index = 0; index < length; index++) {
+			text[index] = readChar();
+		}
+		return text;
+	}
+
+	private char readChar() {
+		final int first = readByte();
+		if (byteLevel || first < 0x80) {
+			return (char) first;
+		}
+		if ((first & 0xE0) == 0xC0) {
+			return (char) (((first & 0x1F) << 6) | readContinuation());
+		}
+		if ((first & 0xF0) == 0xE0) {
+			return (char) (((first & 0x0F) << 12) | (readContinuation() << 6) | readContinuation());
+		}
+		throw new CompressionException("malformed text in compressed block");
+	}
+
+	private int readContinuation() {
+		final int next = readByte();
+		if ((next & 0xC0) != 0x80) {
+			throw new CompressionException("malformed text in compressed block");
+		}
+		return next & 0x3F;
+	}
+
+	boolean hasRemaining() {
+		return data.hasRemaining();
+	}
+
+}
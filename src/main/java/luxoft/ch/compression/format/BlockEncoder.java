@@ -0,0 +1,112 @@
+package luxoft.ch.compression.format;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+final class BlockEncoder {
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private final boolean byteLevel;
+	private byte[] data;
+	private int size;
+	private int[] sectionEnds;
+	private int sectionCount;
+
+	BlockEncoder(boolean byteLevel) {
+		this.byteLevel = byteLevel;
+		data = new byte[INITIAL_CAPACITY];
+		sectionEnds = new int[4];
+	}
+
+	void writeByte(int value) {
+		ensureCapacity(1);
+		data[size++] = (byte) value;
+	}
+
+	void writeBytes(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, data, size, length);
+		size += length;
+	}
+
+	void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			data[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[size++] = (byte) value;
+	}
+
+	void writeText(char[] text) {
+		writeText(text, 0, text.length);
+	}
+
+	void writeText(CharSequence text) {
+		final int length = text.length();
+		writeVarInt(length);
+		ensureCapacity(3 * length);
+		for (int index = 0; index < length; index++) {
+			writeChar(text.charAt(index));
+		}
+	}
+
+	void writeText(char[] text, int offset, int length) {
+		writeVarInt(length);
+		ensureCapacity(3 * length);
+		for (int index = offset; index < offset + length; index++) {
+			writeChar(text[index]);
+		}
+	}
+
+	private void writeChar(char ch) {
+		if (byteLevel) {
+			data[size++] = (byte) ch;
+		} else if (ch < 0x80) {
+			data[size++] = (byte) ch;
+		} else if (ch < 0x800) {
+			data[size++] = (byte) (0xC0 | (ch >> 6));
+			data[size++] = (byte) (0x80 | (ch & 0x3F));
+		} else {
+			data[size++] = (byte) (0xE0 | (ch >> 12));
+			data[size++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+			data[size++] = (byte) (0x80 | (ch & 0x3F));
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void endSection() {
+		if (sectionCount == sectionEnds.length) {
+			sectionEnds = Arrays.copyOf(sectionEnds, sectionCount * 2);
+		}
+		sectionEnds[sectionCount++] = size;
+	}
+
+	int getSectionCount() {
+		return sectionCount;
+	}
+
+	int getSectionEnd(int section) {
+		return sectionEnds[section];
+	}
+
+	void reset() {
+		size = 0;
+		sectionCount = 0;
+	}
+
+	ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(data, 0, size);
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > data.length) {
+			data = Arrays.copyOf(data, Math.max(size + extra, data.length * 2));
+		}
+	}
+
+}
@@ -0,0 +1,9 @@
+package luxoft.ch.compression.format;
+
+public record BlockInfo(long offset, long charOffset, int charCount) {
+
+	public long charEnd() {
+		return charOffset + charCount;
+	}
+
+}
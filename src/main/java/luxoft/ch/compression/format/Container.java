@@ -0,0 +1,29 @@
+package luxoft.ch.compression.format;
+
+final class Container {
+
+	static final int MAGIC = 0x4C58435A;
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = Integer.BYTES + 2;
+
+	static final byte BYTE_LEVEL_FLAG = 1;
+	static final byte SHARED_DICTIONARY_FLAG = 2;
+	static final byte CHARSET_FLAG = 4;
+	static final byte ENTROPY_CODED_FLAG = 8;
+	static final byte HIERARCHICAL_TOKENS_FLAG = 16;
+	static final byte KNOWN_FLAGS = BYTE_LEVEL_FLAG | SHARED_DICTIONARY_FLAG | CHARSET_FLAG | ENTROPY_CODED_FLAG
+			| HIERARCHICAL_TOKENS_FLAG;
+
+	static final int DICTIONARY_MAGIC = 0x4C584344;
+	static final byte DICTIONARY_VERSION = 1;
+
+	static final byte END_TAG = 0;
+	static final byte BLOCK_TAG = 1;
+	static final int BLOCK_HEADER_SIZE = 1 + 3 * Integer.BYTES;
+	static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+	static final int INDEX_TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+	private Container() {
+	}
+
+}
@@ -0,0 +1,280 @@
+package luxoft.ch.compression.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.model.Stash;
+
+public class ContainerReader implements Closeable {
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer blockTag;
+	private final SharedDictionary dictionary;
+	private final CRC32C checksum;
+	private final ByteBuffer blockHeader;
+	private byte flags;
+	private long sharedDictionaryId;
+	private Charset charset;
+	private long firstBlockOffset;
+	private long indexOffset;
+	private boolean finished;
+	private int charCount;
+
+	public ContainerReader(ReadableByteChannel channel) throws IOException {
+		this(channel, null);
+	}
+
+	public ContainerReader(ReadableByteChannel channel, SharedDictionary dictionary) throws IOException {
+		this.channel = channel;
+		this.dictionary = dictionary;
+		blockTag = ByteBuffer.allocate(1);
+		checksum = new CRC32C();
+		blockHeader = ByteBuffer.allocate(Container.BLOCK_HEADER_SIZE - 1);
+		readHeader();
+	}
+
+	public static ContainerReader open(String fileName) throws IOException {
+		return open(fileName, null);
+	}
+
+	public static ContainerReader open(String fileName, SharedDictionary dictionary) throws IOException {
+		return new ContainerReader(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ), dictionary);
+	}
+
+	private void readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Container.HEADER_SIZE);
+		readFully(header);
+		if (header.getInt() != Container.MAGIC) {
+			throw new CompressionException("source data is not a compressed container");
+		}
+		final byte version = header.get();
+		if (version != Container.VERSION) {
+			throw new CompressionException("unsupported container version %d".formatted(version));
+		}
+		flags = header.get();
+		if ((flags & ~Container.KNOWN_FLAGS) != 0
+				|| isByteLevel() == ((flags & Container.CHARSET_FLAG) != 0)) {
+			throw new CompressionException("unsupported container flags %02x".formatted(flags & 0xFF));
+		}
+		if ((flags & Container.SHARED_DICTIONARY_FLAG) != 0) {
+			ByteBuffer dictionaryId = ByteBuffer.allocate(Long.BYTES);
+			readFully(dictionaryId);
+			sharedDictionaryId = dictionaryId.getLong();
+		}
+		firstBlockOffset = Container.HEADER_SIZE + (isSharedDictionary() ? Long.BYTES : 0);
+		charset = isByteLevel() ? StandardCharsets.ISO_8859_1 : readCharset();
+	}
+
+	private Charset readCharset() throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(1);
+		readFully(length);
+		ByteBuffer name = ByteBuffer.allocate(length.get() & 0xFF);
+		readFully(name);
+		firstBlockOffset += 1 + name.capacity();
+		final String charsetName = StandardCharsets.US_ASCII.decode(name).toString();
+		try {
+			return Charset.forName(charsetName);
+		} catch (IllegalArgumentException e) {
+			throw new CompressionException("unsupported charset %s of compressed text".formatted(charsetName), e);
+		}
+	}
+
+	public boolean isByteLevel() {
+		return (flags & Container.BYTE_LEVEL_FLAG) != 0;
+	}
+
+	public boolean isEntropyCoded() {
+		return (flags & Container.ENTROPY_CODED_FLAG) != 0;
+	}
+
+	public boolean isHierarchical() {
+		return (flags & Container.HIERARCHICAL_TOKENS_FLAG) != 0;
+	}
+
+	public boolean hasIndex() {
+		return channel instanceof SeekableByteChannel;
+	}
+
+	public boolean isSharedDictionary() {
+		return (flags & Container.SHARED_DICTIONARY_FLAG) != 0;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public long getSharedDictionaryId() {
+		return sharedDictionaryId;
+	}
+
+	long getIndexOffset() {
+		return indexOffset;
+	}
+
+	public Stash read() throws IOException {
+		final EncodedBlock block = readEncoded();
+		return block == null ? null : decode(block);
+	}
+
+	public EncodedBlock readEncoded() throws IOException {
+		final ByteBuffer payload = readPayload();
+		return payload == null ? null : new EncodedBlock(payload, charCount);
+	}
+
+	/**
+	 * Decodes a block read by {@link #readEncoded()}. It touches no state of the
+	 * reader, so blocks may be decoded on other threads while reading goes on.
+	 */
+	public Stash decode(EncodedBlock encodedBlock) {
+		if (isSharedDictionary() && (dictionary == null || dictionary.getId() != sharedDictionaryId)) {
+			throw new CompressionException(
+					"compressed data needs shared dictionary %016x".formatted(sharedDictionaryId));
+		}
+		final ByteBuffer payload = encodedBlock.payload();
+		Stash block = BlockCodec.decode(isEntropyCoded() ? HuffmanCoder.decode(payload) : payload, isByteLevel(),
+				isSharedDictionary() ? dictionary : null, isHierarchical(), encodedBlock.charCount());
+		if (block.getCharCount() != encodedBlock.charCount()) {
+			throw new CompressionException(
+					"block holds %d chars instead of %d".formatted(block.getCharCount(), encodedBlock.charCount()));
+		}
+		return block;
+	}
+
+	public int verify() throws IOException {
+		List<BlockInfo> frames = new ArrayList<>();
+		long offset = firstBlockOffset;
+		long charOffset = 0;
+		for (ByteBuffer payload = readPayload(); payload != null; payload = readPayload()) {
+			frames.add(new BlockInfo(offset, charOffset, charCount));
+			offset += blockHeader.capacity() + 1 + payload.capacity();
+			charOffset += charCount;
+		}
+		if (channel instanceof SeekableByteChannel) {
+			final var index = readIndex();
+			if (index.size() != frames.size()) {
+				throw new CompressionException(
+						"block index lists %d blocks instead of %d".formatted(index.size(), frames.size()));
+			}
+			for (int block = 0; block < index.size(); block++) {
+				if (!index.get(block).equals(frames.get(block))) {
+					throw new CompressionException("block index entry %d is corrupted".formatted(block));
+				}
+			}
+		}
+		return frames.size();
+	}
+
+	private ByteBuffer readPayload() throws IOException {
+		if (finished) {
+			return null;
+		}
+		blockTag.clear();
+		readFully(blockTag);
+		final byte tag = blockTag.get();
+		if (tag == Container.END_TAG) {
+			finished = true;
+			return null;
+		}
+		if (tag != Container.BLOCK_TAG) {
+			throw new CompressionException("unknown block tag %d".formatted(tag));
+		}
+		blockHeader.clear();
+		readFully(blockHeader);
+		final int payloadSize = blockHeader.getInt();
+		charCount = blockHeader.getInt();
+		if (payloadSize < 0 || charCount < 0) {
+			throw new CompressionException("corrupted block header");
+		}
+		if (channel instanceof SeekableByteChannel seekableChannel
+				&& payloadSize > seekableChannel.size() - seekableChannel.position()) {
+			throw new CompressionException("compressed data is truncated");
+		}
+		ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+		readFully(payload);
+		final int expected = blockHeader.getInt();
+		checksum.reset();
+		checksum.update(payload);
+		payload.rewind();
+		if ((int) checksum.getValue() != expected) {
+			throw new CompressionException("block checksum mismatch");
+		}
+		return payload;
+	}
+
+	public List<BlockInfo> readIndex() throws IOException {
+		if (!(channel instanceof SeekableByteChannel seekableChannel)) {
+			throw new CompressionException("block index needs a seekable channel");
+		}
+		final long position = seekableChannel.position();
+		final long size = seekableChannel.size();
+		if (size < Container.HEADER_SIZE + 1 + Integer.BYTES + Container.INDEX_TRAILER_SIZE) {
+			throw new CompressionException("compressed data is truncated");
+		}
+		ByteBuffer trailer = ByteBuffer.allocate(Container.INDEX_TRAILER_SIZE);
+		seekableChannel.position(size - Container.INDEX_TRAILER_SIZE);
+		readFully(trailer);
+		indexOffset = trailer.getLong();
+		if (trailer.getInt() != Container.MAGIC || indexOffset < Container.HEADER_SIZE
+				|| indexOffset > size - Container.INDEX_TRAILER_SIZE) {
+			throw new CompressionException("block index is missing or corrupted");
+		}
+		ByteBuffer index = ByteBuffer.allocate((int) (size - Container.INDEX_TRAILER_SIZE - indexOffset));
+		seekableChannel.position(indexOffset);
+		readFully(index);
+		final int blockCount = index.get() == Container.END_TAG ? index.getInt() : -1;
+		if (blockCount < 0 || index.remaining() != blockCount * Container.INDEX_ENTRY_SIZE) {
+			throw new CompressionException("block index is corrupted");
+		}
+		List<BlockInfo> blocks = new ArrayList<>(blockCount);
+		long charOffset = 0;
+		for (int block = 0; block < blockCount; block++) {
+			final long offset = index.getLong();
+			final int charCount = index.getInt();
+			blocks.add(new BlockInfo(offset, charOffset, charCount));
+			charOffset += charCount;
+		}
+		seekableChannel.position(position);
+		return blocks;
+	}
+
+	public Stash read(BlockInfo block) throws IOException {
+		if (!(channel instanceof SeekableByteChannel seekableChannel)) {
+			throw new CompressionException("block access needs a seekable channel");
+		}
+		seekableChannel.position(block.offset());
+		finished = false;
+		Stash stash = read();
+		if (stash == null) {
+			throw new CompressionException("no block at offset %d".formatted(block.offset()));
+		}
+		return stash;
+	}
+
+	private void readFully(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			if (channel.read(data) < 0) {
+				throw new CompressionException("unexpected end of compressed data");
+			}
+		}
+		data.flip();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
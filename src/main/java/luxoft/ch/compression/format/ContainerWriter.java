@@ -0,0 +1,223 @@
+package luxoft.ch.compression.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.model.Stash;
+
+public class ContainerWriter implements Closeable {
+
+	private final WritableByteChannel channel;
+	private final boolean byteLevel;
+	private final Charset charset;
+	private final SharedDictionary dictionary;
+	private final HuffmanCoder entropyCoder;
+	private final TokenGrammar grammar;
+	private final BlockEncoder encoder;
+	private final ByteBuffer blockHeader;
+	private final CRC32C checksum;
+	private final List<BlockInfo> blockIndex;
+	private long position;
+	private ByteBuffer replacedTail;
+	private long replacedTailOffset;
+
+	public ContainerWriter(WritableByteChannel channel) throws IOException {
+		this(channel, false);
+	}
+
+	public ContainerWriter(WritableByteChannel channel, boolean byteLevel) throws IOException {
+		this(channel, byteLevel, StandardCharsets.UTF_8, null);
+	}
+
+	public ContainerWriter(WritableByteChannel channel, boolean byteLevel, Charset charset,
+			SharedDictionary dictionary) throws IOException {
+		this(channel, byteLevel, charset, dictionary, false, null);
+	}
+
+	public ContainerWriter(WritableByteChannel channel, boolean byteLevel, Charset charset,
+			SharedDictionary dictionary, boolean entropyCoded, TokenGrammar grammar) throws IOException {
+		this(channel, byteLevel, charset, dictionary, entropyCoded, grammar, new ArrayList<>(), 0);
+		writeHeader();
+	}
+
+	private ContainerWriter(WritableByteChannel channel, boolean byteLevel, Charset charset,
+			SharedDictionary dictionary, boolean entropyCoded, TokenGrammar grammar, List<BlockInfo> blockIndex,
+			long position) {
+		this.channel = channel;
+		this.byteLevel = byteLevel;
+		this.charset = byteLevel ? StandardCharsets.ISO_8859_1 : charset;
+		this.dictionary = dictionary;
+		entropyCoder = entropyCoded ? new HuffmanCoder() : null;
+		this.grammar = grammar;
+		encoder = new BlockEncoder(byteLevel);
+		blockHeader = ByteBuffer.allocate(Container.BLOCK_HEADER_SIZE);
+		checksum = new CRC32C();
+		this.blockIndex = blockIndex;
+		this.position = position;
+	}
+
+	public static ContainerWriter open(String fileName) throws IOException {
+		return open(fileName, false);
+	}
+
+	public static ContainerWriter open(String fileName, boolean byteLevel) throws IOException {
+		return open(fileName, byteLevel, StandardCharsets.UTF_8, null);
+	}
+
+	public static ContainerWriter open(String fileName, boolean byteLevel, Charset charset,
+			SharedDictionary dictionary) throws IOException {
+		return open(fileName, byteLevel, charset, dictionary, false, null);
+	}
+
+	public static ContainerWriter open(String fileName, boolean byteLevel, Charset charset,
+			SharedDictionary dictionary, boolean entropyCoded, TokenGrammar grammar) throws IOException {
+		return new ContainerWriter(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), byteLevel, charset, dictionary,
+				entropyCoded, grammar);
+	}
+
+	public static ContainerWriter append(String fileName, int retainedBlockCount, boolean byteLevel,
+			Charset charset, SharedDictionary dictionary, boolean entropyCoded, TokenGrammar grammar)
+			throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ContainerReader reader = new ContainerReader(channel, dictionary);
+			if (reader.isByteLevel() != byteLevel) {
+				throw new CompressionException("cannot append %s data to a %s container".formatted(
+						byteLevel ? "byte level" : "text", reader.isByteLevel() ? "byte level" : "text"));
+			}
+			if (!byteLevel && !reader.getCharset().equals(charset)) {
+				throw new CompressionException("cannot append %s text to a %s container".formatted(charset.name(),
+						reader.getCharset().name()));
+			}
+			if (reader.isSharedDictionary() != (dictionary != null)
+					|| dictionary != null && dictionary.getId() != reader.getSharedDictionaryId()) {
+				throw new CompressionException("appended data must use the shared dictionary of the container");
+			}
+			if (reader.isEntropyCoded() != entropyCoded) {
+				throw new CompressionException("cannot append %s data to a %s container".formatted(
+						entropyCoded ? "entropy coded" : "plain", reader.isEntropyCoded() ? "entropy coded" : "plain"));
+			}
+			if (reader.isHierarchical() != (grammar != null)) {
+				throw new CompressionException("cannot append %s tokens to a container with %s tokens".formatted(
+						grammar != null ? "hierarchical" : "flat", reader.isHierarchical() ? "hierarchical" : "flat"));
+			}
+			List<BlockInfo> blockIndex = new ArrayList<>(reader.readIndex());
+			if (retainedBlockCount < 0 || retainedBlockCount > blockIndex.size()) {
+				throw new IllegalArgumentException("cannot retain %d of %d blocks".formatted(retainedBlockCount,
+						blockIndex.size()));
+			}
+			final long position = retainedBlockCount < blockIndex.size() ? blockIndex.get(retainedBlockCount).offset()
+					: reader.getIndexOffset();
+			blockIndex.subList(retainedBlockCount, blockIndex.size()).clear();
+			ByteBuffer replacedTail = ByteBuffer.allocate((int) (channel.size() - position));
+			while (replacedTail.hasRemaining()) {
+				if (channel.read(replacedTail, position + replacedTail.position()) < 0) {
+					throw new CompressionException("unexpected end of compressed data");
+				}
+			}
+			channel.truncate(position);
+			channel.position(position);
+			ContainerWriter writer = new ContainerWriter(channel, byteLevel, charset, dictionary, entropyCoded,
+					grammar, blockIndex, position);
+			writer.replacedTail = replacedTail.flip();
+			writer.replacedTailOffset = position;
+			return writer;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		final byte[] charsetName = charset.name().getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer header = ByteBuffer.allocate(Container.HEADER_SIZE + Long.BYTES + 1 + charsetName.length);
+		byte flags = byteLevel ? Container.BYTE_LEVEL_FLAG : Container.CHARSET_FLAG;
+		if (dictionary != null) {
+			flags |= Container.SHARED_DICTIONARY_FLAG;
+		}
+		if (entropyCoder != null) {
+			flags |= Container.ENTROPY_CODED_FLAG;
+		}
+		if (grammar != null) {
+			flags |= Container.HIERARCHICAL_TOKENS_FLAG;
+		}
+		header.putInt(Container.MAGIC).put(Container.VERSION).put(flags);
+		if (dictionary != null) {
+			header.putLong(dictionary.getId());
+		}
+		if (!byteLevel) {
+			header.put((byte) charsetName.length).put(charsetName);
+		}
+		writeFully(header.flip());
+	}
+
+	public void write(Stash block) throws IOException {
+		encoder.reset();
+		BlockCodec.encode(block, encoder, dictionary, grammar);
+		final ByteBuffer payload = entropyCoder != null ? entropyCoder.encode(encoder) : encoder.toByteBuffer();
+		final long charOffset = blockIndex.isEmpty() ? 0 : blockIndex.get(blockIndex.size() - 1).charEnd();
+		blockIndex.add(new BlockInfo(position, charOffset, block.getCharCount()));
+		checksum.reset();
+		checksum.update(payload.duplicate());
+		blockHeader.clear();
+		blockHeader.put(Container.BLOCK_TAG).putInt(payload.remaining()).putInt(block.getCharCount())
+				.putInt((int) checksum.getValue()).flip();
+		writeFully(blockHeader);
+		writeFully(payload);
+	}
+
+	public void finish() throws IOException {
+		final long indexOffset = position;
+		ByteBuffer index = ByteBuffer.allocate(1 + Integer.BYTES + blockIndex.size() * Container.INDEX_ENTRY_SIZE
+				+ Container.INDEX_TRAILER_SIZE);
+		index.put(Container.END_TAG).putInt(blockIndex.size());
+		for (var entry : blockIndex) {
+			index.putLong(entry.offset()).putInt(entry.charCount());
+		}
+		index.putLong(indexOffset).putInt(Container.MAGIC).flip();
+		writeFully(index);
+		replacedTail = null;
+	}
+
+	public long size() {
+		return position;
+	}
+
+	private void writeFully(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			position += channel.write(data);
+		}
+	}
+
+	/**
+	 * Closes the channel. An append that was not finished restores the blocks,
+	 * index and trailer it replaced, so the container stays as it was.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (replacedTail != null && channel instanceof FileChannel fileChannel) {
+				fileChannel.truncate(replacedTailOffset);
+				for (long offset = replacedTailOffset; replacedTail.hasRemaining();) {
+					offset += fileChannel.write(replacedTail, offset);
+				}
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package luxoft.ch.compression.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Block payload as stored in a container, checked against its checksum but
+ * not decoded yet.
+ */
+public record EncodedBlock(ByteBuffer payload, int charCount) {
+}
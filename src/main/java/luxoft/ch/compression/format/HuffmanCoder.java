@@ -0,0 +1,281 @@
+package luxoft.ch.compression.format;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import luxoft.ch.compression.CompressionException;
+
+/**
+ * Canonical Huffman coding of block payload sections. Every section becomes a
+ * stream of its own, so token texts, references and gap texts each get their
+ * own code table. A stream is either stored or coded: the code lengths of all
+ * used byte values are packed in nibbles and followed by the MSB-first bit
+ * stream, which is decoded through a single lookup table of
+ * {@code 2^MAX_CODE_LENGTH} entries.
+ */
+final class HuffmanCoder {
+
+	static final int MAX_CODE_LENGTH = 12;
+
+	private static final int SYMBOL_COUNT = 256;
+	private static final byte STORED = 0;
+	private static final byte CODED = 1;
+
+	private final int[] frequencies;
+	private final int[] codeLengths;
+	private final int[] codes;
+	private final BlockEncoder output;
+	private byte[] bits;
+
+	HuffmanCoder() {
+		frequencies = new int[SYMBOL_COUNT];
+		codeLengths = new int[SYMBOL_COUNT];
+		codes = new int[SYMBOL_COUNT];
+		output = new BlockEncoder(true);
+		bits = new byte[0];
+	}
+
+	ByteBuffer encode(BlockEncoder encoder) {
+		final ByteBuffer payload = encoder.toByteBuffer();
+		output.reset();
+		output.writeVarInt(encoder.getSectionCount());
+		int start = 0;
+		for (int section = 0; section < encoder.getSectionCount(); section++) {
+			final int end = encoder.getSectionEnd(section);
+			encodeStream(payload.array(), start, end);
+			start = end;
+		}
+		return output.toByteBuffer();
+	}
+
+	private void encodeStream(byte[] data, int start, int end) {
+		final int length = end - start;
+		Arrays.fill(frequencies, 0);
+		for (int index = start; index < end; index++) {
+			frequencies[data[index] & 0xFF]++;
+		}
+		int symbolCount = 0;
+		for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+			if (frequencies[symbol] > 0) {
+				symbolCount = symbol + 1;
+			}
+		}
+		buildCodeLengths();
+		long bitCount = 0;
+		for (int symbol = 0; symbol < symbolCount; symbol++) {
+			bitCount += (long) frequencies[symbol] * codeLengths[symbol];
+		}
+		final int codedSize = (int) ((bitCount + 7) >>> 3);
+		output.writeVarInt(length);
+		if (length == 0 || (symbolCount + 1) / 2 + codedSize + 2 >= length) {
+			output.writeByte(STORED);
+			output.writeBytes(data, start, length);
+			return;
+		}
+		assignCodes();
+		output.writeByte(CODED);
+		output.writeVarInt(symbolCount);
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			output.writeByte(codeLengths[symbol] << 4 | (symbol + 1 < symbolCount ? codeLengths[symbol + 1] : 0));
+		}
+		output.writeVarInt(codedSize);
+		if (bits.length < codedSize + Long.BYTES) {
+			bits = new byte[codedSize + Long.BYTES];
+		}
+		long accumulator = 0;
+		int pending = 0;
+		int size = 0;
+		for (int index = start; index < end; index++) {
+			final int symbol = data[index] & 0xFF;
+			accumulator = accumulator << codeLengths[symbol] | codes[symbol];
+			pending += codeLengths[symbol];
+			while (pending >= 8) {
+				pending -= 8;
+				bits[size++] = (byte) (accumulator >>> pending);
+			}
+		}
+		if (pending > 0) {
+			bits[size++] = (byte) (accumulator << (8 - pending));
+		}
+		output.writeBytes(bits, 0, size);
+	}
+
+	private void buildCodeLengths() {
+		int[] weights = frequencies.clone();
+		while (!buildCodeLengths(weights)) {
+			for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+				if (weights[symbol] > 0) {
+					weights[symbol] = (weights[symbol] + 1) >>> 1;
+				}
+			}
+		}
+	}
+
+	private boolean buildCodeLengths(int[] weights) {
+		Arrays.fill(codeLengths, 0);
+		long[] nodeWeights = new long[2 * SYMBOL_COUNT];
+		int[] parents = new int[2 * SYMBOL_COUNT];
+		PriorityQueue<Integer> queue = new PriorityQueue<>(
+				(first, second) -> nodeWeights[first] != nodeWeights[second]
+						? Long.compare(nodeWeights[first], nodeWeights[second])
+						: Integer.compare(first, second));
+		for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+			if (weights[symbol] > 0) {
+				nodeWeights[symbol] = weights[symbol];
+				queue.add(symbol);
+			}
+		}
+		if (queue.size() == 1) {
+			codeLengths[queue.peek()] = 1;
+			return true;
+		}
+		int nodeCount = SYMBOL_COUNT;
+		while (queue.size() > 1) {
+			final int first = queue.poll();
+			final int second = queue.poll();
+			nodeWeights[nodeCount] = nodeWeights[first] + nodeWeights[second];
+			parents[first] = nodeCount;
+			parents[second] = nodeCount;
+			queue.add(nodeCount++);
+		}
+		final int root = nodeCount - 1;
+		int[] depths = new int[2 * SYMBOL_COUNT];
+		for (int node = root - 1; node >= SYMBOL_COUNT; node--) {
+			depths[node] = depths[parents[node]] + 1;
+		}
+		for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+			if (weights[symbol] > 0) {
+				codeLengths[symbol] = depths[parents[symbol]] + 1;
+				if (codeLengths[symbol] > MAX_CODE_LENGTH) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void assignCodes() {
+		assignCodes(codeLengths, codes);
+	}
+
+	private static void assignCodes(int[] codeLengths, int[] codes) {
+		int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+		for (var length : codeLengths) {
+			lengthCounts[length]++;
+		}
+		lengthCounts[0] = 0;
+		int[] nextCodes = new int[MAX_CODE_LENGTH + 1];
+		int code = 0;
+		for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+			code = (code + lengthCounts[length - 1]) << 1;
+			nextCodes[length] = code;
+		}
+		for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+			if (codeLengths[symbol] > 0) {
+				codes[symbol] = nextCodes[codeLengths[symbol]]++;
+			}
+		}
+	}
+
+	static ByteBuffer decode(ByteBuffer payload) {
+		BlockDecoder decoder = new BlockDecoder(payload, true);
+		final int streamCount = decoder.readVarInt();
+		if (streamCount > payload.remaining()) {
+			throw new CompressionException("stream count %d exceeds compressed block".formatted(streamCount));
+		}
+		byte[][] streams = new byte[streamCount][];
+		int size = 0;
+		for (int stream = 0; stream < streamCount; stream++) {
+			streams[stream] = decodeStream(payload, decoder);
+			size += streams[stream].length;
+		}
+		if (payload.hasRemaining()) {
+			throw new CompressionException("unexpected trailing data in compressed block");
+		}
+		ByteBuffer data = ByteBuffer.allocate(size);
+		for (var stream : streams) {
+			data.put(stream);
+		}
+		return data.flip();
+	}
+
+	private static byte[] decodeStream(ByteBuffer payload, BlockDecoder decoder) {
+		final int length = decoder.readVarInt();
+		final int mode = decoder.readByte();
+		if (mode == STORED) {
+			if (length > payload.remaining()) {
+				throw new CompressionException("stored stream exceeds compressed block");
+			}
+			byte[] data = new byte[length];
+			payload.get(data);
+			return data;
+		}
+		if (mode != CODED) {
+			throw new CompressionException("unknown stream mode %d".formatted(mode));
+		}
+		final int symbolCount = decoder.readVarInt();
+		if (symbolCount > SYMBOL_COUNT) {
+			throw new CompressionException("corrupted code table");
+		}
+		int[] codeLengths = new int[symbolCount];
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			final int packed = decoder.readByte();
+			codeLengths[symbol] = packed >>> 4;
+			if (symbol + 1 < symbolCount) {
+				codeLengths[symbol + 1] = packed & 0x0F;
+			}
+		}
+		final short[] table = buildDecodingTable(codeLengths);
+		final int codedSize = decoder.readVarInt();
+		if (codedSize > payload.remaining() || length > 8L * codedSize) {
+			throw new CompressionException("coded stream exceeds compressed block");
+		}
+		final int limit = payload.position() + codedSize;
+		byte[] data = new byte[length];
+		long accumulator = 0;
+		int available = 0;
+		int position = payload.position();
+		for (int index = 0; index < length; index++) {
+			while (available <= 56 && position < limit) {
+				accumulator |= (payload.get(position++) & 0xFFL) << (56 - available);
+				available += 8;
+			}
+			final int entry = table[(int) (accumulator >>> (64 - MAX_CODE_LENGTH))];
+			final int codeLength = entry & 0x0F;
+			if (codeLength == 0 || codeLength > available) {
+				throw new CompressionException("corrupted coded stream");
+			}
+			data[index] = (byte) (entry >>> 4);
+			accumulator <<= codeLength;
+			available -= codeLength;
+		}
+		payload.position(limit);
+		return data;
+	}
+
+	private static short[] buildDecodingTable(int[] codeLengths) {
+		for (var length : codeLengths) {
+			if (length > MAX_CODE_LENGTH) {
+				throw new CompressionException("corrupted code table");
+			}
+		}
+		int[] codes = new int[codeLengths.length];
+		assignCodes(codeLengths, codes);
+		short[] table = new short[1 << MAX_CODE_LENGTH];
+		for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+			final int length = codeLengths[symbol];
+			if (length == 0) {
+				continue;
+			}
+			final int first = codes[symbol] << (MAX_CODE_LENGTH - length);
+			final int last = first + (1 << (MAX_CODE_LENGTH - length));
+			if (last > table.length) {
+				throw new CompressionException("corrupted code table");
+			}
+			Arrays.fill(table, first, last, (short) (symbol << 4 | length));
+		}
+		return table;
+	}
+
+}
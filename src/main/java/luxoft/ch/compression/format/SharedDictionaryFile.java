@@ -0,0 +1,58 @@
+package luxoft.ch.compression.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.model.SharedDictionary;
+
+public final class SharedDictionaryFile {
+
+	private static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES;
+
+	private SharedDictionaryFile() {
+	}
+
+	public static void save(SharedDictionary dictionary, String fileName) throws IOException {
+		BlockEncoder encoder = new BlockEncoder(false);
+		encoder.writeVarInt(dictionary.size());
+		for (int tokenId = 0; tokenId < dictionary.size(); tokenId++) {
+			encoder.writeText(dictionary.getToken(tokenId));
+		}
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + encoder.size());
+		data.putInt(Container.DICTIONARY_MAGIC).put(Container.DICTIONARY_VERSION).putLong(dictionary.getId())
+				.put(encoder.toByteBuffer());
+		Files.write(Paths.get(fileName), data.array());
+	}
+
+	public static SharedDictionary load(String fileName) throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+		if (data.remaining() < HEADER_SIZE || data.getInt() != Container.DICTIONARY_MAGIC) {
+			throw new CompressionException("%s is not a shared dictionary".formatted(fileName));
+		}
+		final byte version = data.get();
+		if (version != Container.DICTIONARY_VERSION) {
+			throw new CompressionException("unsupported shared dictionary version %d".formatted(version));
+		}
+		final long id = data.getLong();
+		BlockDecoder decoder = new BlockDecoder(data, false);
+		final int tokenCount = decoder.readVarInt();
+		if (tokenCount > data.remaining()) {
+			throw new CompressionException("shared dictionary %s is corrupted".formatted(fileName));
+		}
+		List<String> tokens = new ArrayList<>(tokenCount);
+		for (int tokenId = 0; tokenId < tokenCount; tokenId++) {
+			tokens.add(String.valueOf(decoder.readText()));
+		}
+		SharedDictionary dictionary = new SharedDictionary(tokens);
+		if (decoder.hasRemaining() || dictionary.getId() != id) {
+			throw new CompressionException("shared dictionary %s is corrupted".formatted(fileName));
+		}
+		return dictionary;
+	}
+
+}
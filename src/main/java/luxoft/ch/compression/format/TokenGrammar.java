@@ -0,0 +1,16 @@
+package luxoft.ch.compression.format;
+
+import luxoft.ch.compression.model.Stash;
+
+/**
+ * Rules of a hierarchical token table. The texts of all tokens of a block are
+ * concatenated and compressed like a block of their own, so substrings shared
+ * by many tokens are stored once as rules; loading expands the rules and
+ * splits the text back into a flattened token table.
+ */
+@FunctionalInterface
+public interface TokenGrammar {
+
+	Stash derive(CharSequence tokenTable);
+
+}
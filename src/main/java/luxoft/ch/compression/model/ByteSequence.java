@@ -0,0 +1,36 @@
+package luxoft.ch.compression.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class ByteSequence implements CharSequence {
+
+	private final ByteBuffer bytes;
+
+	public ByteSequence(ByteBuffer bytes) {
+		this.bytes = bytes.slice();
+	}
+
+	@Override
+	public int length() {
+		return bytes.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (bytes.get(index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new ByteSequence(bytes.slice(start, end - start));
+	}
+
+	@Override
+	public String toString() {
+		byte[] data = new byte[bytes.limit()];
+		bytes.get(0, data);
+		return new String(data, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -1,173 +1,124 @@
 package luxoft.ch.compression.model;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NavigableMap;
 import luxoft.ch.compression.CompressionException;
 
 import java.util.StringJoiner;
 import java.util.TreeMap;
-import java.util.stream.Stream;
 
 public class Dictionary {
 
-	private static final int INITIAL_TOKEN_LENGTH = 2;
-	private static final int BUFFER_CAPACITY = 1 * 1024 * 1024;
+	public static final int DEFAULT_BUFFER_CAPACITY = 1 * 1024 * 1024;
 
-	private static final Comparator<Entry<String, List<Integer>>> TOKEN_TOTAL_SPACE_REVERSED_COMPARATOR = Comparator
-			.comparingInt(Dictionary::getTokenTotalSpace).reversed();
 	private static final Comparator<String> MAP_KEY_COMPARATOR = Comparator.comparingInt(String::length)
 			.thenComparing(String::compareTo);
 
-	private final NavigableMap<String, List<Integer>> tokens;
-	private final CharBuffer buffer;
+	private final TokenDiscovery tokenDiscovery;
+	private final int bufferCapacity;
+	private TokenTable tokens;
+	private CharBuffer charBuffer;
+	private CharSequence buffer;
 
 	public Dictionary() {
-		tokens = new TreeMap<>(MAP_KEY_COMPARATOR);
-		this.buffer = CharBuffer.allocate(BUFFER_CAPACITY);
+		this(new SuffixArrayTokenDiscovery());
 	}
 
-	public void addTokenEntry(String token, Integer entryIndex) {
-		addTokenEntry(tokens, token, entryIndex);
+	public Dictionary(TokenDiscovery tokenDiscovery) {
+		this(tokenDiscovery, DEFAULT_BUFFER_CAPACITY);
 	}
 
-	private static void addTokenEntry(Map<String, List<Integer>> tokens, String token, Integer entryIndex) {
-		var entries = tokens.get(token);
-		if (entries == null) {
-			entries = new ArrayList<>();
-			entries.add(entryIndex);
-			tokens.put(token, entries);
-		} else {
-			entries.add(entryIndex);
-		}
+	public Dictionary(TokenDiscovery tokenDiscovery, int bufferCapacity) {
+		this.tokenDiscovery = tokenDiscovery;
+		this.bufferCapacity = bufferCapacity;
+		buffer = "";
+		tokens = new TokenTable(buffer);
 	}
 
-	public void initialize(String sourceFileName) {
-		try (Reader reader = new BufferedReader(new FileReader(new File(sourceFileName)))) {
-			reader.read(buffer);
-			buffer.flip();
-			char[] tokenData = new char[Dictionary.INITIAL_TOKEN_LENGTH];
-			final int size = buffer.limit() - tokenData.length + 1;
-			for (int index = 0; index < size; index++) {
-				buffer.get(index, tokenData);
-				addTokenEntry(String.valueOf(tokenData), index);
-			}
-			deleteSolitaries();
-		} catch (IOException e) {
-			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
-		}
-	}
-
-	private void deleteSolitaries() {
-		for (var iter = tokens.entrySet().iterator(); iter.hasNext();) {
-			var entry = iter.next();
-			if (isSolitary(entry)) {
-				iter.remove();
-			}
-		}
+	static NavigableMap<String, List<Integer>> newTokenMap() {
+		return new TreeMap<>(MAP_KEY_COMPARATOR);
 	}
 
-	private static boolean isSolitary(Entry<String, List<Integer>> entry) {
-		return entry.getValue().size() <= 1;
+	public void initialize(String sourceFileName) {
+		initialize(sourceFileName, StandardCharsets.UTF_8);
 	}
 
-	public void growLargerTokens() {
-		int tokenLength = INITIAL_TOKEN_LENGTH;
-		while (growTokensOfLength(tokenLength) > 0) {
-			tokenLength++;
+	public void initialize(String sourceFileName, Charset charset) {
+		try (Reader reader = Files.newBufferedReader(Paths.get(sourceFileName), charset)) {
+			initialize(reader);
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
 		}
 	}
 
-	private int growTokensOfLength(int tokenLength) {
-		Map<String, List<Integer>> newTokenEntries = new HashMap<>();
-		final String startKey = getStartKeyOf(tokenLength);
-		for (var tokenIter = tokens.tailMap(startKey, true).entrySet().iterator(); tokenIter.hasNext();) {
-			final var token = tokenIter.next();
-			if (!hasLength(token, tokenLength)) {
-				break;
-			}
-			if (!isSolitary(token)) {
-				expandTokenEntries(newTokenEntries, token);
-			}
-			if (isSolitary(token)) {
-				tokenIter.remove();
-			}
+	public boolean initialize(Reader reader) throws IOException {
+		if (charBuffer == null) {
+			charBuffer = CharBuffer.allocate(bufferCapacity);
 		}
-		tokens.putAll(newTokenEntries);
-		return newTokenEntries.size();
-	}
-
-	private static String getStartKeyOf(int tokenLength) {
-		StringBuilder builder = new StringBuilder();
-		for (int index = 0; index < tokenLength; index++) {
-			builder.append('\0');
+		charBuffer.clear();
+		int count;
+		do {
+			count = reader.read(charBuffer);
+		} while (count >= 0 && charBuffer.hasRemaining());
+		charBuffer.flip();
+		buffer = charBuffer;
+		tokens = new TokenTable(buffer);
+		return charBuffer.hasRemaining();
+	}
+
+	public boolean initialize(CharBuffer source) {
+		if (charBuffer == null) {
+			charBuffer = CharBuffer.allocate(bufferCapacity);
 		}
-		return builder.toString();
+		charBuffer.clear();
+		final int count = Math.min(source.remaining(), charBuffer.remaining());
+		charBuffer.put(source.slice().limit(count));
+		source.position(source.position() + count);
+		charBuffer.flip();
+		buffer = charBuffer;
+		tokens = new TokenTable(buffer);
+		return charBuffer.hasRemaining();
 	}
 
-	private static boolean hasLength(Entry<String, List<Integer>> entry, int length) {
-		return entry.getKey().length() == length;
-	}
-
-	private int expandTokenEntries(Map<String, List<Integer>> newTokenEntries,
-			Entry<String, List<Integer>> tokenEntry) {
-		int expandedTokenEntries = 0;
-		Map<Character, Integer> charEntries = countCharEntries(tokenEntry);
-		for (var indexIter = tokenEntry.getValue().iterator(); indexIter.hasNext();) {
-			final int index = indexIter.next();
-			final int charIndex = nextCharIndex(tokenEntry, index);
-			if (charIndex < getCharCount()) {
-				final char nextChar = getNextChar(charIndex);
-				final Integer charCount = charEntries.get(nextChar);
-				if (charCount != null && charCount.intValue() > 1) {
-					final String expandedToken = tokenEntry.getKey() + nextChar;
-					addTokenEntry(newTokenEntries, expandedToken, index);
-					indexIter.remove();
-					expandedTokenEntries++;
-				}
-			}
-		}
-		return expandedTokenEntries;
+	public boolean initialize(ByteBuffer bytes) {
+		buffer = new ByteSequence(bytes);
+		tokens = new TokenTable(buffer);
+		return bytes.hasRemaining();
 	}
 
-	private int nextCharIndex(Entry<String, List<Integer>> tokenEntry, final int startIndex) {
-		return startIndex + tokenEntry.getKey().length();
+	public void reset() {
+		buffer = "";
+		tokens = new TokenTable(buffer);
 	}
 
-	private Map<Character, Integer> countCharEntries(Entry<String, List<Integer>> tokenEntry) {
-		Map<Character, Integer> counts = new HashMap<>();
-		for (var index : tokenEntry.getValue()) {
-			final int charIndex = nextCharIndex(tokenEntry, index);
-			if (charIndex < getCharCount()) {
-				final char nextChar = getNextChar(charIndex);
-				counts.merge(nextChar, 1, (oldValue, value) -> oldValue + 1);
-			}
-		}
-		return counts;
+	public void growLargerTokens() {
+		tokens = tokenDiscovery.discover(buffer);
 	}
 
 	public char getNextChar(int index) {
-		if (index >= buffer.limit()) {
+		if (index >= buffer.length()) {
 			throw new CompressionException(
-					"wrong index %d greater or equal than buffer limit %d".formatted(index, buffer.limit()));
+					"wrong index %d greater or equal than buffer limit %d".formatted(index, buffer.length()));
 		}
-		return buffer.get(index);
+		return buffer.charAt(index);
 	}
 
 	public char[] getChars(int startIndex, int length) {
-		final int size = Math.max(Math.min(length, buffer.limit() - startIndex), 0);
+		final int size = Math.max(Math.min(length, buffer.length() - startIndex), 0);
 		char[] data = new char[size];
-		buffer.get(startIndex, data);
+		for (int index = 0; index < size; index++) {
+			data[index] = buffer.charAt(startIndex + index);
+		}
 		return data;
 	}
 
@@ -176,27 +127,68 @@ public class Dictionary {
 	}
 
 	public int getCharCount() {
-		return buffer.limit();
+		return buffer.length();
 	}
 
-	public Stream<Entry<String, List<Integer>>> getTokensByTotalSpaceReversed(int minTokenLength) {
-		return tokens.entrySet().stream().filter(entry -> isLongEnough(entry, minTokenLength))
-				.sorted(TOKEN_TOTAL_SPACE_REVERSED_COMPARATOR);
+	public TokenTable getTokenTable() {
+		return tokens;
 	}
 
-	private static boolean isLongEnough(Entry<String, List<Integer>> tokenEntry, int minTokenLength) {
-		return tokenEntry.getKey().length() >= minTokenLength;
+	/**
+	 * Ids of tokens of at least the given length, by total space descending and
+	 * then in token order. Ids are sorted packed under their total space, and
+	 * only runs of equal space are ordered by content.
+	 */
+	public int[] getTokenIdsByTotalSpaceReversed(int minTokenLength) {
+		long[] keys = new long[tokens.size()];
+		int count = 0;
+		for (int tokenId = 0; tokenId < tokens.size(); tokenId++) {
+			if (tokens.getLength(tokenId) >= minTokenLength) {
+				keys[count++] = (long) (Integer.MAX_VALUE - tokens.getTotalSpace(tokenId)) << Integer.SIZE | tokenId;
+			}
+		}
+		Arrays.sort(keys, 0, count);
+		int[] tokenIds = new int[count];
+		for (int index = 0; index < count; index++) {
+			tokenIds[index] = (int) keys[index];
+		}
+		int[] buffer = new int[count];
+		for (int from = 0; from < count;) {
+			int to = from + 1;
+			while (to < count && keys[to] >>> Integer.SIZE == keys[from] >>> Integer.SIZE) {
+				to++;
+			}
+			sortByToken(tokenIds, buffer, from, to);
+			from = to;
+		}
+		return tokenIds;
 	}
 
-	private static int getTokenTotalSpace(Entry<String, List<Integer>> entry) {
-		return entry.getKey().length() * entry.getValue().size();
+	private void sortByToken(int[] tokenIds, int[] buffer, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		final int middle = (from + to) >>> 1;
+		sortByToken(tokenIds, buffer, from, middle);
+		sortByToken(tokenIds, buffer, middle, to);
+		if (tokens.compareTokens(tokenIds[middle - 1], tokenIds[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(tokenIds, from, buffer, from, to - from);
+		for (int index = from, left = from, right = middle; index < to; index++) {
+			if (right >= to || left < middle && tokens.compareTokens(buffer[left], buffer[right]) <= 0) {
+				tokenIds[index] = buffer[left++];
+			} else {
+				tokenIds[index] = buffer[right++];
+			}
+		}
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("{\n");
-		for (var entry : tokens.entrySet()) {
+		for (var entry : tokens.toMap().entrySet()) {
 			builder.append("  token: ").append(entry.getKey()).append(", indices: ");
 			StringJoiner join = new StringJoiner(",", "[", "]");
 			for (var index : entry.getValue()) {
@@ -0,0 +1,67 @@
+package luxoft.ch.compression.model;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Bounds of a token discovery run on degenerate input. Tokens never grow
+ * beyond {@code maxTokenLength}. Discovery stops once {@code timeBudget} is
+ * spent or once the token texts it keeps take more than {@code memoryBudget}
+ * bytes, and returns the tokens found so far.
+ * <p>
+ * {@code maxRounds} means different things to the two engines. Growing
+ * discovery stops after that many rounds, each of which extends tokens of one
+ * length by a char or jumps them to the end of a detected repeat. Suffix array
+ * discovery has no rounds, since it finds all lengths in one walk; there the
+ * limit caps tokens at {@link #maxLengthAfterRounds()} chars, the length growing
+ * discovery reaches in that many rounds without jumps.
+ */
+public record DiscoveryLimits(int maxTokenLength, int maxRounds, Duration timeBudget, long memoryBudget) {
+
+	public static final DiscoveryLimits UNLIMITED = new DiscoveryLimits(Integer.MAX_VALUE, Integer.MAX_VALUE,
+			Duration.ofNanos(Long.MAX_VALUE), Long.MAX_VALUE);
+
+	static final int MIN_TOKEN_LENGTH = 2;
+
+	public DiscoveryLimits {
+		if (maxTokenLength < MIN_TOKEN_LENGTH)
+			throw new IllegalArgumentException(
+					"maximal token length %d must be at least %d".formatted(maxTokenLength, MIN_TOKEN_LENGTH));
+		if (maxRounds <= 0)
+			throw new IllegalArgumentException("maximal round count %d must be positive".formatted(maxRounds));
+		Objects.requireNonNull(timeBudget, "time budget must be specified");
+		if (timeBudget.isNegative() || timeBudget.isZero())
+			throw new IllegalArgumentException("time budget %s must be positive".formatted(timeBudget));
+		if (memoryBudget <= 0)
+			throw new IllegalArgumentException("memory budget %d must be positive".formatted(memoryBudget));
+	}
+
+	public DiscoveryLimits withMaxTokenLength(int maxTokenLength) {
+		return new DiscoveryLimits(maxTokenLength, maxRounds, timeBudget, memoryBudget);
+	}
+
+	public DiscoveryLimits withMaxRounds(int maxRounds) {
+		return new DiscoveryLimits(maxTokenLength, maxRounds, timeBudget, memoryBudget);
+	}
+
+	public DiscoveryLimits withTimeBudget(Duration timeBudget) {
+		return new DiscoveryLimits(maxTokenLength, maxRounds, timeBudget, memoryBudget);
+	}
+
+	public DiscoveryLimits withMemoryBudget(long memoryBudget) {
+		return new DiscoveryLimits(maxTokenLength, maxRounds, timeBudget, memoryBudget);
+	}
+
+	/**
+	 * Length tokens reach after {@code maxRounds} one-char extensions of the
+	 * shortest token, bounded by {@code maxTokenLength}.
+	 */
+	public int maxLengthAfterRounds() {
+		return (int) Math.min(maxTokenLength, (long) MIN_TOKEN_LENGTH + maxRounds);
+	}
+
+	boolean isTimeSpent(long startNanos) {
+		return System.nanoTime() - startNanos >= timeBudget.toNanos();
+	}
+
+}
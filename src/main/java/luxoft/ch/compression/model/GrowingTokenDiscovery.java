@@ -0,0 +1,194 @@
+package luxoft.ch.compression.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+public class GrowingTokenDiscovery implements TokenDiscovery {
+
+	private static final int INITIAL_TOKEN_LENGTH = 2;
+
+	private final DiscoveryLimits limits;
+
+	public GrowingTokenDiscovery() {
+		this(DiscoveryLimits.UNLIMITED);
+	}
+
+	public GrowingTokenDiscovery(DiscoveryLimits limits) {
+		this.limits = limits;
+	}
+
+	@Override
+	public TokenTable discover(CharSequence buffer) {
+		NavigableMap<String, List<Integer>> tokens = Dictionary.newTokenMap();
+		final int size = buffer.length() - INITIAL_TOKEN_LENGTH + 1;
+		for (int index = 0; index < size; index++) {
+			addTokenEntry(tokens, buffer.subSequence(index, index + INITIAL_TOKEN_LENGTH).toString(), index);
+		}
+		deleteSolitaries(tokens);
+		growLargerTokens(tokens, buffer);
+		return toTokenTable(tokens, buffer);
+	}
+
+	private static TokenTable toTokenTable(NavigableMap<String, List<Integer>> tokens, CharSequence buffer) {
+		TokenTable table = new TokenTable(buffer);
+		IntList positions = new IntList();
+		for (var entry : tokens.entrySet()) {
+			positions.clear();
+			for (var position : entry.getValue()) {
+				positions.add(position);
+			}
+			table.add(positions.get(0), entry.getKey().length(), positions, 0, positions.size());
+		}
+		return table;
+	}
+
+	private static void addTokenEntry(Map<String, List<Integer>> tokens, String token, Integer entryIndex) {
+		var entries = tokens.get(token);
+		if (entries == null) {
+			entries = new ArrayList<>();
+			entries.add(entryIndex);
+			tokens.put(token, entries);
+		} else {
+			entries.add(entryIndex);
+		}
+	}
+
+	private static void deleteSolitaries(Map<String, List<Integer>> tokens) {
+		for (var iter = tokens.entrySet().iterator(); iter.hasNext();) {
+			var entry = iter.next();
+			if (isSolitary(entry)) {
+				iter.remove();
+			}
+		}
+	}
+
+	private static boolean isSolitary(Entry<String, List<Integer>> entry) {
+		return entry.getValue().size() <= 1;
+	}
+
+	private void growLargerTokens(NavigableMap<String, List<Integer>> tokens, CharSequence buffer) {
+		final long start = System.nanoTime();
+		long tokenChars = (long) INITIAL_TOKEN_LENGTH * tokens.size();
+		int tokenLength = INITIAL_TOKEN_LENGTH;
+		for (int round = 0; round < limits.maxRounds() && tokenLength < limits.maxTokenLength(); round++) {
+			if (tokenChars * Character.BYTES > limits.memoryBudget() || limits.isTimeSpent(start)) {
+				break;
+			}
+			tokenChars += growTokensOfLength(tokens, buffer, tokenLength);
+			final String nextKey = tokens.ceilingKey(getStartKeyOf(tokenLength + 1));
+			if (nextKey == null) {
+				break;
+			}
+			tokenLength = nextKey.length();
+		}
+	}
+
+	private long growTokensOfLength(NavigableMap<String, List<Integer>> tokens, CharSequence buffer,
+			int tokenLength) {
+		Map<String, List<Integer>> newTokenEntries = new HashMap<>();
+		long tokenChars = 0;
+		final String startKey = getStartKeyOf(tokenLength);
+		for (var tokenIter = tokens.tailMap(startKey, true).entrySet().iterator(); tokenIter.hasNext();) {
+			final var token = tokenIter.next();
+			if (!hasLength(token, tokenLength)) {
+				break;
+			}
+			if (!isSolitary(token) && !jumpTokenEntries(newTokenEntries, token, buffer)) {
+				expandTokenEntries(newTokenEntries, token, buffer);
+			}
+			if (isSolitary(token)) {
+				tokenIter.remove();
+				tokenChars -= tokenLength;
+			}
+		}
+		for (var token : newTokenEntries.keySet()) {
+			tokenChars += token.length();
+		}
+		tokens.putAll(newTokenEntries);
+		return tokenChars;
+	}
+
+	/**
+	 * Moves all entries of a token at once to its longest common extension, which
+	 * is what repeated single char rounds would end with on long repeats.
+	 */
+	private boolean jumpTokenEntries(Map<String, List<Integer>> newTokenEntries,
+			Entry<String, List<Integer>> tokenEntry, CharSequence buffer) {
+		final List<Integer> entries = tokenEntry.getValue();
+		final int first = nextCharIndex(tokenEntry, entries.get(0));
+		final int maxExtension = limits.maxTokenLength() - tokenEntry.getKey().length();
+		int extension = 0;
+		extending: while (extension < maxExtension && first + extension < buffer.length()) {
+			final char nextChar = buffer.charAt(first + extension);
+			for (int entry = 1; entry < entries.size(); entry++) {
+				final int charIndex = nextCharIndex(tokenEntry, entries.get(entry)) + extension;
+				if (charIndex >= buffer.length() || buffer.charAt(charIndex) != nextChar) {
+					break extending;
+				}
+			}
+			extension++;
+		}
+		if (extension < 2) {
+			return false;
+		}
+		final String expandedToken = tokenEntry.getKey() + buffer.subSequence(first, first + extension);
+		newTokenEntries.put(expandedToken, new ArrayList<>(entries));
+		entries.clear();
+		return true;
+	}
+
+	private static String getStartKeyOf(int tokenLength) {
+		StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < tokenLength; index++) {
+			builder.append('\0');
+		}
+		return builder.toString();
+	}
+
+	private static boolean hasLength(Entry<String, List<Integer>> entry, int length) {
+		return entry.getKey().length() == length;
+	}
+
+	private static int expandTokenEntries(Map<String, List<Integer>> newTokenEntries,
+			Entry<String, List<Integer>> tokenEntry, CharSequence buffer) {
+		int expandedTokenEntries = 0;
+		Map<Character, Integer> charEntries = countCharEntries(tokenEntry, buffer);
+		for (var indexIter = tokenEntry.getValue().iterator(); indexIter.hasNext();) {
+			final int index = indexIter.next();
+			final int charIndex = nextCharIndex(tokenEntry, index);
+			if (charIndex < buffer.length()) {
+				final char nextChar = buffer.charAt(charIndex);
+				final Integer charCount = charEntries.get(nextChar);
+				if (charCount != null && charCount.intValue() > 1) {
+					final String expandedToken = tokenEntry.getKey() + nextChar;
+					addTokenEntry(newTokenEntries, expandedToken, index);
+					indexIter.remove();
+					expandedTokenEntries++;
+				}
+			}
+		}
+		return expandedTokenEntries;
+	}
+
+	private static int nextCharIndex(Entry<String, List<Integer>> tokenEntry, final int startIndex) {
+		return startIndex + tokenEntry.getKey().length();
+	}
+
+	private static Map<Character, Integer> countCharEntries(Entry<String, List<Integer>> tokenEntry,
+			CharSequence buffer) {
+		Map<Character, Integer> counts = new HashMap<>();
+		for (var index : tokenEntry.getValue()) {
+			final int charIndex = nextCharIndex(tokenEntry, index);
+			if (charIndex < buffer.length()) {
+				final char nextChar = buffer.charAt(charIndex);
+				counts.merge(nextChar, 1, (oldValue, value) -> oldValue + 1);
+			}
+		}
+		return counts;
+	}
+
+}
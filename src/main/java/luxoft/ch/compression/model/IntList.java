@@ -0,0 +1,90 @@
+package luxoft.ch.compression.model;
+
+import java.util.Arrays;
+
+public final class IntList {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] data;
+	private int size;
+
+	public IntList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntList(int capacity) {
+		data = new int[Math.max(capacity, 1)];
+	}
+
+	public void add(int value) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		data[size++] = value;
+	}
+
+	public void addAll(IntList values, int from, int to) {
+		final int count = to - from;
+		if (size + count > data.length) {
+			data = Arrays.copyOf(data, Math.max(size + count, data.length * 2));
+		}
+		System.arraycopy(values.data, from, data, size, count);
+		size += count;
+	}
+
+	public int get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return data[index];
+	}
+
+	public void set(int index, int value) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		data[index] = value;
+	}
+
+	public int last() {
+		return get(size - 1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void truncate(int size) {
+		if (size > this.size) {
+			throw new IndexOutOfBoundsException(size);
+		}
+		this.size = size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void sort(int from, int to) {
+		Arrays.sort(data, from, to);
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	public int[] toArray(int from, int to) {
+		return Arrays.copyOfRange(data, from, to);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+}
@@ -0,0 +1,69 @@
+package luxoft.ch.compression.model;
+
+import java.util.Arrays;
+
+final class Occupancy {
+
+	private static final int INITIAL_WORD_COUNT = 1024;
+	private static final int WORD_SHIFT = 6;
+
+	private long[] words;
+
+	Occupancy() {
+		words = new long[INITIAL_WORD_COUNT];
+	}
+
+	void occupy(int startPosition, int endPosition) {
+		if (endPosition < startPosition) {
+			return;
+		}
+		final int startWord = startPosition >>> WORD_SHIFT;
+		final int endWord = endPosition >>> WORD_SHIFT;
+		ensureCapacity(endWord);
+		final long startMask = -1L << startPosition;
+		final long endMask = -1L >>> -(endPosition + 1);
+		if (startWord == endWord) {
+			words[startWord] |= startMask & endMask;
+			return;
+		}
+		words[startWord] |= startMask;
+		for (int word = startWord + 1; word < endWord; word++) {
+			words[word] = -1L;
+		}
+		words[endWord] |= endMask;
+	}
+
+	boolean isFree(int startPosition, int endPosition) {
+		final int startWord = startPosition >>> WORD_SHIFT;
+		if (endPosition < startPosition || startWord >= words.length) {
+			return true;
+		}
+		final int endWord = endPosition >>> WORD_SHIFT;
+		final long startMask = -1L << startPosition;
+		final long endMask = -1L >>> -(endPosition + 1);
+		if (startWord == endWord) {
+			return (words[startWord] & startMask & endMask) == 0;
+		}
+		if ((words[startWord] & startMask) != 0) {
+			return false;
+		}
+		final int lastWord = Math.min(endWord, words.length);
+		for (int word = startWord + 1; word < lastWord; word++) {
+			if (words[word] != 0) {
+				return false;
+			}
+		}
+		return endWord >= words.length || (words[endWord] & endMask) == 0;
+	}
+
+	void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	private void ensureCapacity(int word) {
+		if (word >= words.length) {
+			words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+		}
+	}
+
+}
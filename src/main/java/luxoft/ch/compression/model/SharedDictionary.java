@@ -0,0 +1,127 @@
+package luxoft.ch.compression.model;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import luxoft.ch.compression.CompressionException;
+
+/**
+ * Tokens trained once on a sample corpus and referenced by every document
+ * compressed with it, so blocks store only their ids. The id is derived from
+ * the token texts and is written to the container header.
+ */
+public final class SharedDictionary {
+
+	private final String[] tokens;
+	private final Map<String, Integer> tokenIds;
+	private final long id;
+	private final int keyLength;
+	private final int[] slots;
+	private final int[] nextInSlot;
+
+	public SharedDictionary(List<String> tokens) {
+		this.tokens = tokens.toArray(String[]::new);
+		tokenIds = new HashMap<>();
+		int minLength = Integer.MAX_VALUE;
+		for (int tokenId = 0; tokenId < this.tokens.length; tokenId++) {
+			final String token = this.tokens[tokenId];
+			if (token.isEmpty())
+				throw new IllegalArgumentException("token shouldn't be empty");
+			if (tokenIds.putIfAbsent(token, tokenId) != null)
+				throw new IllegalArgumentException("token %s is repeated".formatted(token));
+			minLength = Math.min(minLength, token.length());
+		}
+		id = digest(this.tokens);
+		keyLength = this.tokens.length == 0 ? 1 : minLength;
+		slots = new int[Integer.highestOneBit(Math.max(this.tokens.length, 1) * 2 - 1) * 2];
+		nextInSlot = new int[this.tokens.length];
+		indexTokens();
+	}
+
+	private static long digest(String[] tokens) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			for (var token : tokens) {
+				digest.update(length.clear().putInt(token.length()).flip());
+				for (int index = 0; index < token.length(); index++) {
+					final char ch = token.charAt(index);
+					digest.update((byte) (ch >> 8));
+					digest.update((byte) ch);
+				}
+			}
+			return ByteBuffer.wrap(digest.digest()).getLong();
+		} catch (NoSuchAlgorithmException e) {
+			throw new CompressionException("cannot compute dictionary id", e);
+		}
+	}
+
+	private void indexTokens() {
+		Integer[] byLength = new Integer[tokens.length];
+		for (int tokenId = 0; tokenId < tokens.length; tokenId++) {
+			byLength[tokenId] = tokenId;
+		}
+		Arrays.sort(byLength, Comparator.comparingInt(tokenId -> tokens[tokenId].length()));
+		for (var tokenId : byLength) {
+			final int slot = hash(tokens[tokenId], 0) & (slots.length - 1);
+			nextInSlot[tokenId] = slots[slot] - 1;
+			slots[slot] = tokenId + 1;
+		}
+	}
+
+	private int hash(CharSequence text, int start) {
+		int hash = 0;
+		for (int index = start; index < start + keyLength; index++) {
+			hash = 31 * hash + text.charAt(index);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public int size() {
+		return tokens.length;
+	}
+
+	public String getToken(int tokenId) {
+		return tokens[tokenId];
+	}
+
+	public int indexOf(String token) {
+		return tokenIds.getOrDefault(token, -1);
+	}
+
+	public int match(CharSequence text, int position) {
+		if (position + keyLength > text.length()) {
+			return -1;
+		}
+		final int slot = hash(text, position) & (slots.length - 1);
+		for (int tokenId = slots[slot] - 1; tokenId >= 0; tokenId = nextInSlot[tokenId]) {
+			if (matches(tokens[tokenId], text, position)) {
+				return tokenId;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matches(String token, CharSequence text, int position) {
+		if (position + token.length() > text.length()) {
+			return false;
+		}
+		for (int index = 0; index < token.length(); index++) {
+			if (token.charAt(index) != text.charAt(position + index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -1,12 +1,12 @@
 package luxoft.ch.compression.model;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -17,7 +17,7 @@ import java.util.stream.Stream.Builder;
 
 import luxoft.ch.compression.CompressionException;
 
-public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
+public class Stash implements Iterable<Map.Entry<String, int[]>> {
 
 	public record Range(String token, int start, int end) implements Comparable<Range> {
 
@@ -56,6 +56,15 @@ public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
 
 	public record Statistics(int tokenCount, int tokenSize, int entryCount, int entrySize, int uncompressedCount,
 			int uncompressedSize) {
+
+		public static final Statistics EMPTY = new Statistics(0, 0, 0, 0, 0, 0);
+
+		public Statistics plus(Statistics statistics) {
+			return new Statistics(tokenCount + statistics.tokenCount, tokenSize + statistics.tokenSize,
+					entryCount + statistics.entryCount, entrySize + statistics.entrySize,
+					uncompressedCount + statistics.uncompressedCount, uncompressedSize + statistics.uncompressedSize);
+		}
+
 	}
 
 	public Statistics getStatistics() {
@@ -63,6 +72,10 @@ public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
 				getUncompressedSize());
 	}
 
+	public int getCharCount() {
+		return getEntrySize() + getUncompressedSize();
+	}
+
 	private int getTokenCount() {
 		return tokenEntries.size();
 	}
@@ -103,64 +116,92 @@ public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
 		return size;
 	}
 
-	private Map<String, int[]> tokenEntries;
-	private List<char[]> uncompressedRanges;
+	private final Map<String, int[]> tokenEntries;
+	private final List<char[]> uncompressedRanges;
+	private final Occupancy occupancy;
+	private int[] referenceStarts;
+	private String[] referenceTokens;
+	private long overlapCheckCount;
+	private long overlapRejectionCount;
 
 	public Stash() {
-		tokenEntries = new HashMap<>();
+		tokenEntries = new LinkedHashMap<>();
 		uncompressedRanges = new ArrayList<>();
+		occupancy = new Occupancy();
+	}
+
+	public void clear() {
+		tokenEntries.clear();
+		uncompressedRanges.clear();
+		occupancy.clear();
+		referenceStarts = null;
+		referenceTokens = null;
+		overlapCheckCount = 0;
+		overlapRejectionCount = 0;
+	}
+
+	public Iterator<char[]> getUncompressedRangesIterator() {
+		return uncompressedRanges.iterator();
 	}
 
-	private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
-		int tESize = stream.readShort();
-		tokenEntries = new HashMap<>(tESize);
-		for (int k = tESize; k > 0; k--) {
-			String key = stream.readUTF();
-			int entryCount = stream.readByte();
-			int[] entries = new int[entryCount];
-			for (int m = 0; m < entryCount; m++) {
-				entries[m] = stream.readShort();
+	public void appendTo(Appendable target, int start, int end) throws IOException {
+		var tokenIter = getReferencedTokensIterator();
+		int position = 0;
+		for (var rangeIter = getUncompressedRangesIterator(); rangeIter.hasNext() && position < end;) {
+			char[] range = rangeIter.next();
+			appendIntersection(target, CharBuffer.wrap(range), position, start, end);
+			position += range.length;
+			if (rangeIter.hasNext() && position < end) {
+				String token = tokenIter.next();
+				appendIntersection(target, token, position, start, end);
+				position += token.length();
 			}
-			tokenEntries.put(key, entries);
 		}
-		int uRSize = stream.readShort();
-		uncompressedRanges = new ArrayList<>(uRSize);
-		for (int k = uRSize; k > 0; k--) {
-			String data = stream.readUTF();
-			uncompressedRanges.add(data.toCharArray());
+	}
+
+	private static void appendIntersection(Appendable target, CharSequence data, int position, int start, int end)
+			throws IOException {
+		final int from = Math.max(start - position, 0);
+		final int to = Math.min(end - position, data.length());
+		if (from < to) {
+			target.append(data, from, to);
 		}
 	}
 
-	private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
-		stream.writeShort(tokenEntries.size());
-		for (var entry : tokenEntries.entrySet()) {
-			stream.writeUTF(entry.getKey());
-			stream.writeByte(entry.getValue().length);
-			for (var index : entry.getValue()) {
-				stream.writeShort(index);
-			}
+	public String findTokenByStartPosition(int start) {
+		if (referenceStarts == null) {
+			buildReferenceIndex();
 		}
-		stream.writeShort(uncompressedRanges.size());
-		for (var range : uncompressedRanges) {
-			StringBuilder sb = new StringBuilder();
-			for (var ch : range) {
-				sb.append(ch);
-			}
-			stream.writeUTF(sb.toString());
+		final int index = Arrays.binarySearch(referenceStarts, start);
+		if (index < 0) {
+			throw new CompressionException("proper token not found for position %d".formatted(start));
 		}
+		return referenceTokens[index];
 	}
 
-	public Iterator<char[]> getUncompressedRangesIterator() {
-		return uncompressedRanges.iterator();
+	public Iterator<String> getReferencedTokensIterator() {
+		if (referenceStarts == null) {
+			buildReferenceIndex();
+		}
+		return Arrays.asList(referenceTokens).iterator();
 	}
 
-	public String findTokenByStartPosition(int start) {
-		for (var entry : tokenEntries.entrySet()) {
-			if (Arrays.binarySearch(entry.getValue(), start) >= 0) {
-				return entry.getKey();
+	private void buildReferenceIndex() {
+		String[] tokens = tokenEntries.keySet().toArray(new String[0]);
+		long[] references = new long[getEntryCount()];
+		int count = 0;
+		for (int tokenId = 0; tokenId < tokens.length; tokenId++) {
+			for (var start : tokenEntries.get(tokens[tokenId])) {
+				references[count++] = ((long) start << Integer.SIZE) | tokenId;
 			}
 		}
-		throw new CompressionException("proper token not found for position %d".formatted(start));
+		Arrays.sort(references);
+		referenceStarts = new int[count];
+		referenceTokens = new String[count];
+		for (int index = 0; index < count; index++) {
+			referenceStarts[index] = (int) (references[index] >>> Integer.SIZE);
+			referenceTokens[index] = tokens[(int) references[index]];
+		}
 	}
 
 	public SortedSet<String> getTokens() {
@@ -197,7 +238,27 @@ public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
 	}
 
 	public void add(String token, List<Integer> indices) {
-		tokenEntries.put(token, indices.stream().mapToInt(Integer::intValue).toArray());
+		add(token, indices.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	public void add(String token, int[] entries) {
+		tokenEntries.merge(token, entries, Stash::mergeEntries);
+		occupy(token, entries);
+		referenceStarts = null;
+		referenceTokens = null;
+	}
+
+	private static int[] mergeEntries(int[] first, int[] second) {
+		int[] entries = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, entries, first.length, second.length);
+		Arrays.sort(entries);
+		return entries;
+	}
+
+	private void occupy(String token, int[] entries) {
+		for (var start : entries) {
+			occupancy.occupy(start, start + token.length() - 1);
+		}
 	}
 
 	public void addUncompressedData(List<char[]> data) {
@@ -205,33 +266,20 @@ public class Stash implements Iterable<Map.Entry<String, int[]>>, Serializable {
 	}
 
 	public boolean isTokenEntryMayBeApplied(int startPosition, int endPosition) {
-		for (var entry : tokenEntries.entrySet()) {
-			final int tokenLength = entry.getKey().length();
-			final int startIndex = getStartIndex(entry.getValue(), startPosition);
-			for (int index = startIndex; index < entry.getValue().length; index++) {
-				final int start = entry.getValue()[index];
-				final int end = start + tokenLength - 1;
-				if (start > endPosition) {
-					break;
-				}
-				if (isIntersected(startPosition, endPosition, start, end)) {
-					return false;
-				}
-			}
+		overlapCheckCount++;
+		if (occupancy.isFree(startPosition, endPosition)) {
+			return true;
 		}
-		return true;
+		overlapRejectionCount++;
+		return false;
 	}
 
-	private int getStartIndex(int[] indices, int key) {
-		int startIndex = Arrays.binarySearch(indices, key);
-		if (startIndex >= 0) {
-			return startIndex;
-		}
-		return Math.max(-startIndex - 2, 0);
+	public long getOverlapCheckCount() {
+		return overlapCheckCount;
 	}
 
-	private boolean isIntersected(int startPosition, int endPosition, int start, int end) {
-		return end >= startPosition && endPosition >= start;
+	public long getOverlapRejectionCount() {
+		return overlapRejectionCount;
 	}
 
 }
@@ -0,0 +1,85 @@
+package luxoft.ch.compression.model;
+
+public class SuffixArrayTokenDiscovery implements TokenDiscovery {
+
+	private static final int MIN_TOKEN_LENGTH = 2;
+	private static final int MIN_TOKEN_ENTRY_COUNT = 2;
+	private static final int TIME_CHECK_MASK = 0xFFF;
+
+	private final DiscoveryLimits limits;
+
+	public SuffixArrayTokenDiscovery() {
+		this(DiscoveryLimits.UNLIMITED);
+	}
+
+	public SuffixArrayTokenDiscovery(DiscoveryLimits limits) {
+		this.limits = limits;
+	}
+
+	@Override
+	public TokenTable discover(CharSequence buffer) {
+		final long startNanos = System.nanoTime();
+		TokenTable tokens = new TokenTable(buffer);
+		final int length = buffer.length();
+		if (length < MIN_TOKEN_LENGTH) {
+			return tokens;
+		}
+		int[] text = SuffixArrays.encode(buffer);
+		int[] suffixes = SuffixArrays.build(text, SuffixArrays.alphabetSize(text));
+		int[] lcp = SuffixArrays.lcp(text, suffixes);
+		capDepths(lcp, limits.maxLengthAfterRounds());
+		long tokenChars = 0;
+		IntList depths = new IntList();
+		IntList starts = new IntList();
+		IntList positions = new IntList(length);
+		depths.add(0);
+		starts.add(0);
+		for (int rank = 1; rank <= length; rank++) {
+			if (((rank - 1) & TIME_CHECK_MASK) == 0 && limits.isTimeSpent(startNanos)) {
+				break;
+			}
+			final int next = rank < length ? lcp[rank + 1] : 0;
+			if (next > depths.last()) {
+				depths.add(next);
+				starts.add(positions.size());
+				positions.add(suffixes[rank]);
+			} else {
+				positions.add(suffixes[rank]);
+				while (next < depths.last() && tokenChars * Character.BYTES <= limits.memoryBudget()) {
+					final int depth = depths.last();
+					final int start = starts.last();
+					depths.truncate(depths.size() - 1);
+					starts.truncate(starts.size() - 1);
+					tokenChars += addToken(tokens, positions, depth, start);
+					positions.truncate(start);
+				}
+				if (next < depths.last()) {
+					break;
+				}
+				if (next > depths.last()) {
+					depths.add(next);
+					starts.add(positions.size());
+				}
+			}
+		}
+		return tokens;
+	}
+
+	private static void capDepths(int[] lcp, int maxTokenLength) {
+		for (int rank = 0; rank < lcp.length; rank++) {
+			if (lcp[rank] > maxTokenLength) {
+				lcp[rank] = maxTokenLength;
+			}
+		}
+	}
+
+	private static int addToken(TokenTable tokens, IntList positions, int depth, int start) {
+		if (depth < MIN_TOKEN_LENGTH || positions.size() - start < MIN_TOKEN_ENTRY_COUNT) {
+			return 0;
+		}
+		positions.sort(start, positions.size());
+		tokens.add(positions.get(start), depth, positions, start, positions.size());
+		return depth;
+	}
+
+}
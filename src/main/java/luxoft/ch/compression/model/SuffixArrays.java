@@ -0,0 +1,196 @@
+package luxoft.ch.compression.model;
+
+import java.util.Arrays;
+
+final class SuffixArrays {
+
+	private SuffixArrays() {
+	}
+
+	static int[] encode(CharSequence buffer) {
+		final int length = buffer.length();
+		int[] alphabet = new int[Character.MAX_VALUE + 1];
+		for (int index = 0; index < length; index++) {
+			alphabet[buffer.charAt(index)] = 1;
+		}
+		int rank = 0;
+		for (int ch = 0; ch < alphabet.length; ch++) {
+			if (alphabet[ch] != 0) {
+				alphabet[ch] = ++rank;
+			}
+		}
+		int[] text = new int[length + 1];
+		for (int index = 0; index < length; index++) {
+			text[index] = alphabet[buffer.charAt(index)];
+		}
+		return text;
+	}
+
+	static int alphabetSize(int[] text) {
+		int max = 0;
+		for (var symbol : text) {
+			max = Math.max(max, symbol);
+		}
+		return max + 1;
+	}
+
+	static int[] build(int[] text, int alphabetSize) {
+		int[] suffixes = new int[text.length];
+		sais(text, suffixes, text.length, alphabetSize);
+		return suffixes;
+	}
+
+	static int[] lcp(int[] text, int[] suffixes) {
+		final int length = suffixes.length;
+		int[] rank = new int[length];
+		for (int index = 0; index < length; index++) {
+			rank[suffixes[index]] = index;
+		}
+		int[] lcp = new int[length];
+		int height = 0;
+		for (int position = 0; position < length; position++) {
+			if (rank[position] > 0) {
+				final int previous = suffixes[rank[position] - 1];
+				while (position + height < length && previous + height < length
+						&& text[position + height] == text[previous + height]) {
+					height++;
+				}
+				lcp[rank[position]] = height;
+				if (height > 0) {
+					height--;
+				}
+			} else {
+				height = 0;
+			}
+		}
+		return lcp;
+	}
+
+	private static void sais(int[] text, int[] suffixes, int length, int alphabetSize) {
+		boolean[] sType = new boolean[length];
+		sType[length - 1] = true;
+		for (int index = length - 2; index >= 0; index--) {
+			sType[index] = text[index] < text[index + 1]
+					|| (text[index] == text[index + 1] && sType[index + 1]);
+		}
+		int[] buckets = new int[alphabetSize];
+
+		bucketEnds(text, length, buckets);
+		Arrays.fill(suffixes, 0, length, -1);
+		for (int index = 1; index < length; index++) {
+			if (isLms(sType, index)) {
+				suffixes[--buckets[text[index]]] = index;
+			}
+		}
+		induceL(text, suffixes, sType, length, buckets);
+		induceS(text, suffixes, sType, length, buckets);
+
+		int lmsCount = 0;
+		for (int index = 0; index < length; index++) {
+			if (isLms(sType, suffixes[index])) {
+				suffixes[lmsCount++] = suffixes[index];
+			}
+		}
+		Arrays.fill(suffixes, lmsCount, length, -1);
+		int name = 0;
+		int previous = -1;
+		for (int index = 0; index < lmsCount; index++) {
+			final int position = suffixes[index];
+			boolean differs = false;
+			for (int offset = 0; offset < length; offset++) {
+				if (previous == -1 || text[position + offset] != text[previous + offset]
+						|| sType[position + offset] != sType[previous + offset]) {
+					differs = true;
+					break;
+				} else if (offset > 0 && (isLms(sType, position + offset) || isLms(sType, previous + offset))) {
+					break;
+				}
+			}
+			if (differs) {
+				name++;
+				previous = position;
+			}
+			suffixes[lmsCount + position / 2] = name - 1;
+		}
+		int[] reduced = new int[lmsCount];
+		for (int index = length - 1, target = lmsCount - 1; index >= lmsCount; index--) {
+			if (suffixes[index] >= 0) {
+				reduced[target--] = suffixes[index];
+			}
+		}
+
+		int[] reducedSuffixes = new int[lmsCount];
+		if (name < lmsCount) {
+			sais(reduced, reducedSuffixes, lmsCount, name);
+		} else {
+			for (int index = 0; index < lmsCount; index++) {
+				reducedSuffixes[reduced[index]] = index;
+			}
+		}
+
+		for (int index = 1, target = 0; index < length; index++) {
+			if (isLms(sType, index)) {
+				reduced[target++] = index;
+			}
+		}
+		bucketEnds(text, length, buckets);
+		Arrays.fill(suffixes, 0, length, -1);
+		for (int index = lmsCount - 1; index >= 0; index--) {
+			final int position = reduced[reducedSuffixes[index]];
+			suffixes[--buckets[text[position]]] = position;
+		}
+		induceL(text, suffixes, sType, length, buckets);
+		induceS(text, suffixes, sType, length, buckets);
+	}
+
+	private static boolean isLms(boolean[] sType, int index) {
+		return index > 0 && sType[index] && !sType[index - 1];
+	}
+
+	private static void bucketStarts(int[] text, int length, int[] buckets) {
+		countSymbols(text, length, buckets);
+		int sum = 0;
+		for (int symbol = 0; symbol < buckets.length; symbol++) {
+			final int count = buckets[symbol];
+			buckets[symbol] = sum;
+			sum += count;
+		}
+	}
+
+	private static void bucketEnds(int[] text, int length, int[] buckets) {
+		countSymbols(text, length, buckets);
+		int sum = 0;
+		for (int symbol = 0; symbol < buckets.length; symbol++) {
+			sum += buckets[symbol];
+			buckets[symbol] = sum;
+		}
+	}
+
+	private static void countSymbols(int[] text, int length, int[] buckets) {
+		Arrays.fill(buckets, 0);
+		for (int index = 0; index < length; index++) {
+			buckets[text[index]]++;
+		}
+	}
+
+	private static void induceL(int[] text, int[] suffixes, boolean[] sType, int length, int[] buckets) {
+		bucketStarts(text, length, buckets);
+		for (int index = 0; index < length; index++) {
+			final int position = suffixes[index] - 1;
+			if (position >= 0 && !sType[position]) {
+				suffixes[buckets[text[position]]++] = position;
+			}
+		}
+	}
+
+	private static void induceS(int[] text, int[] suffixes, boolean[] sType, int length, int[] buckets) {
+		bucketEnds(text, length, buckets);
+		for (int index = length - 1; index >= 0; index--) {
+			final int position = suffixes[index] - 1;
+			if (position >= 0 && sType[position]) {
+				suffixes[--buckets[text[position]]] = position;
+			}
+		}
+	}
+
+}
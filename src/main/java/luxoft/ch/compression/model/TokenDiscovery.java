@@ -0,0 +1,7 @@
+package luxoft.ch.compression.model;
+
+public interface TokenDiscovery {
+
+	TokenTable discover(CharSequence buffer);
+
+}
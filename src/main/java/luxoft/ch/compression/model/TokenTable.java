@@ -0,0 +1,154 @@
+package luxoft.ch.compression.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+
+public final class TokenTable {
+
+	private static final int EMPTY_SLOT = -1;
+
+	private final CharSequence buffer;
+	private final IntList offsets;
+	private final IntList lengths;
+	private final IntList entryStarts;
+	private final IntList entries;
+	private int[] slots;
+
+	public TokenTable(CharSequence buffer) {
+		this.buffer = buffer;
+		offsets = new IntList();
+		lengths = new IntList();
+		entryStarts = new IntList();
+		entryStarts.add(0);
+		entries = new IntList();
+	}
+
+	public int add(int offset, int length, IntList positions, int from, int to) {
+		final int tokenId = size();
+		offsets.add(offset);
+		lengths.add(length);
+		entries.addAll(positions, from, to);
+		entryStarts.add(entries.size());
+		if (slots != null) {
+			index(tokenId);
+		}
+		return tokenId;
+	}
+
+	public int size() {
+		return offsets.size();
+	}
+
+	public CharSequence getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset(int tokenId) {
+		return offsets.get(tokenId);
+	}
+
+	public int getLength(int tokenId) {
+		return lengths.get(tokenId);
+	}
+
+	public String getToken(int tokenId) {
+		final int offset = offsets.get(tokenId);
+		return buffer.subSequence(offset, offset + lengths.get(tokenId)).toString();
+	}
+
+	public int getEntryCount(int tokenId) {
+		return entryStarts.get(tokenId + 1) - entryStarts.get(tokenId);
+	}
+
+	public int getEntry(int tokenId, int index) {
+		return entries.get(entryStarts.get(tokenId) + index);
+	}
+
+	public int[] getEntries(int tokenId) {
+		return entries.toArray(entryStarts.get(tokenId), entryStarts.get(tokenId + 1));
+	}
+
+	public int getTotalSpace(int tokenId) {
+		return getLength(tokenId) * getEntryCount(tokenId);
+	}
+
+	public int compareTokens(int firstId, int secondId) {
+		final int lengthOrder = Integer.compare(getLength(firstId), getLength(secondId));
+		if (lengthOrder != 0) {
+			return lengthOrder;
+		}
+		final int firstOffset = getOffset(firstId);
+		final int secondOffset = getOffset(secondId);
+		for (int index = 0; index < getLength(firstId); index++) {
+			final int charOrder = Character.compare(buffer.charAt(firstOffset + index),
+					buffer.charAt(secondOffset + index));
+			if (charOrder != 0) {
+				return charOrder;
+			}
+		}
+		return 0;
+	}
+
+	public int find(CharSequence text, int offset, int length) {
+		if (slots == null) {
+			buildIndex();
+		}
+		final int mask = slots.length - 1;
+		for (int slot = hash(text, offset, length) & mask; slots[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+			final int tokenId = slots[slot];
+			if (getLength(tokenId) == length && contentEquals(tokenId, text, offset)) {
+				return tokenId;
+			}
+		}
+		return -1;
+	}
+
+	private boolean contentEquals(int tokenId, CharSequence text, int offset) {
+		final int tokenOffset = getOffset(tokenId);
+		for (int index = 0; index < getLength(tokenId); index++) {
+			if (buffer.charAt(tokenOffset + index) != text.charAt(offset + index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void buildIndex() {
+		slots = new int[Integer.highestOneBit(Math.max(size(), 8) * 2) * 2];
+		Arrays.fill(slots, EMPTY_SLOT);
+		for (int tokenId = 0; tokenId < size(); tokenId++) {
+			index(tokenId);
+		}
+	}
+
+	private void index(int tokenId) {
+		if (2 * size() > slots.length) {
+			buildIndex();
+			return;
+		}
+		final int mask = slots.length - 1;
+		int slot = hash(buffer, getOffset(tokenId), getLength(tokenId)) & mask;
+		while (slots[slot] != EMPTY_SLOT) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = tokenId;
+	}
+
+	private static int hash(CharSequence text, int offset, int length) {
+		int hash = length;
+		for (int index = offset; index < offset + length; index++) {
+			hash = 31 * hash + text.charAt(index);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	public NavigableMap<String, List<Integer>> toMap() {
+		NavigableMap<String, List<Integer>> tokens = Dictionary.newTokenMap();
+		for (int tokenId = 0; tokenId < size(); tokenId++) {
+			tokens.put(getToken(tokenId), Arrays.stream(getEntries(tokenId)).boxed().toList());
+		}
+		return tokens;
+	}
+
+}
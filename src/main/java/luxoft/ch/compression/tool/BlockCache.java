@@ -0,0 +1,131 @@
+package luxoft.ch.compression.tool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import luxoft.ch.compression.model.Stash;
+
+/**
+ * Decoded blocks of compressed files, shared by decompressors that read the
+ * same files again. Entries are keyed by file identity, modification time,
+ * size and block offset, so a rewritten file never hits stale blocks, and the
+ * least recently used blocks are evicted once their estimated weight in bytes
+ * exceeds the limit.
+ */
+public final class BlockCache {
+
+	public static final long DEFAULT_MAX_WEIGHT = 128L * 1024 * 1024;
+
+	private static final BlockCache SHARED = new BlockCache(DEFAULT_MAX_WEIGHT);
+
+	public record Statistics(long hitCount, long missCount, long evictionCount, int blockCount, long weight) {
+
+		public double hitRatio() {
+			final long requestCount = hitCount + missCount;
+			return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+		}
+
+		@Override
+		public String toString() {
+			return "%d blocks of %d bytes, %d hits, %d misses, %d evictions".formatted(blockCount, weight, hitCount,
+					missCount, evictionCount);
+		}
+
+	}
+
+	record FileIdentity(Object fileKey, FileTime modifiedTime, long size) {
+	}
+
+	private record Key(FileIdentity file, long blockOffset) {
+	}
+
+	private record Entry(Stash block, long weight) {
+	}
+
+	@FunctionalInterface
+	interface Loader {
+
+		Stash load() throws IOException;
+
+	}
+
+	private final long maxWeight;
+	private final Map<Key, Entry> entries;
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public BlockCache(long maxWeight) {
+		if (maxWeight <= 0)
+			throw new IllegalArgumentException("maximal cache weight %d must be positive".formatted(maxWeight));
+		this.maxWeight = maxWeight;
+		entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public static BlockCache shared() {
+		return SHARED;
+	}
+
+	static FileIdentity identify(String fileName) throws IOException {
+		final Path path = Path.of(fileName);
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		final Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : path.toRealPath();
+		return new FileIdentity(fileKey, attributes.lastModifiedTime(), attributes.size());
+	}
+
+	Stash get(FileIdentity file, long blockOffset, Loader loader) throws IOException {
+		final Key key = new Key(file, blockOffset);
+		synchronized (this) {
+			final Entry entry = entries.get(key);
+			if (entry != null) {
+				hitCount++;
+				return entry.block();
+			}
+			missCount++;
+		}
+		final Stash block = loader.load();
+		block.getReferencedTokensIterator();
+		final long blockWeight = weigh(block);
+		if (blockWeight <= maxWeight) {
+			put(key, new Entry(block, blockWeight));
+		}
+		return block;
+	}
+
+	private synchronized void put(Key key, Entry entry) {
+		final Entry previous = entries.put(key, entry);
+		weight += entry.weight() - (previous == null ? 0 : previous.weight());
+		for (Iterator<Entry> iter = entries.values().iterator(); weight > maxWeight && iter.hasNext();) {
+			weight -= iter.next().weight();
+			iter.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Rough heap footprint: chars of gaps and distinct tokens plus the reference
+	 * index of a start position and a token per entry.
+	 */
+	private static long weigh(Stash block) {
+		final Stash.Statistics statistics = block.getStatistics();
+		return (long) Character.BYTES * (statistics.uncompressedSize() + statistics.tokenSize())
+				+ 16L * statistics.uncompressedCount() + 12L * statistics.entryCount();
+	}
+
+	public synchronized Statistics getStatistics() {
+		return new Statistics(hitCount, missCount, evictionCount, entries.size(), weight);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+}
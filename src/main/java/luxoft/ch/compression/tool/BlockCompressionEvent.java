@@ -0,0 +1,47 @@
+package luxoft.ch.compression.tool;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("luxoft.compression.BlockCompression")
+@Label("Block Compression")
+@Description("Discovery, selection and collection of one compressed block")
+@Category("Compression")
+@StackTrace(false)
+class BlockCompressionEvent extends jdk.jfr.Event {
+
+	@Label("Chars")
+	int charCount;
+
+	@Label("Candidate Tokens")
+	int candidateTokenCount;
+
+	@Label("Selected Tokens")
+	int tokenCount;
+
+	@Label("References")
+	int entryCount;
+
+	@Label("Overlap Checks")
+	long overlapCheckCount;
+
+	@Label("Overlap Rejections")
+	long overlapRejectionCount;
+
+	@Label("Discovery")
+	@Timespan
+	long discoveryNanos;
+
+	@Label("Selection")
+	@Timespan
+	long selectionNanos;
+
+	@Label("Collection")
+	@Timespan
+	long collectionNanos;
+
+}
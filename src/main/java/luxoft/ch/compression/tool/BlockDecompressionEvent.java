@@ -0,0 +1,22 @@
+package luxoft.ch.compression.tool;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("luxoft.compression.BlockDecompression")
+@Label("Block Decompression")
+@Description("Reading and decoding of one compressed block")
+@Category("Compression")
+@StackTrace(false)
+class BlockDecompressionEvent extends jdk.jfr.Event {
+
+	@Label("Chars")
+	int charCount;
+
+	@Label("References")
+	int entryCount;
+
+}
@@ -0,0 +1,78 @@
+package luxoft.ch.compression.tool;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+import luxoft.ch.compression.format.ContainerReader;
+import luxoft.ch.compression.model.Stash;
+
+final class BlockTextReader extends Reader {
+
+	private final ContainerReader container;
+	private Iterator<char[]> rangeIter;
+	private Iterator<String> tokenIter;
+	private char[] range;
+	private String token;
+	private int position;
+
+	BlockTextReader(ContainerReader container) {
+		this.container = container;
+	}
+
+	@Override
+	public int read(char[] target, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!nextSegment()) {
+			return -1;
+		}
+		int count;
+		if (range != null) {
+			count = Math.min(length, range.length - position);
+			System.arraycopy(range, position, target, offset, count);
+		} else {
+			count = Math.min(length, token.length() - position);
+			token.getChars(position, position + count, target, offset);
+		}
+		position += count;
+		return count;
+	}
+
+	private boolean nextSegment() throws IOException {
+		while (position == segmentLength()) {
+			position = 0;
+			if (range != null && rangeIter.hasNext()) {
+				range = null;
+				token = tokenIter.next();
+			} else if (rangeIter != null && rangeIter.hasNext()) {
+				range = rangeIter.next();
+				token = null;
+			} else {
+				Stash block = container.read();
+				if (block == null) {
+					return false;
+				}
+				rangeIter = block.getUncompressedRangesIterator();
+				tokenIter = block.getReferencedTokensIterator();
+				range = null;
+				token = null;
+			}
+		}
+		return true;
+	}
+
+	private int segmentLength() {
+		if (range != null) {
+			return range.length;
+		}
+		return token == null ? 0 : token.length();
+	}
+
+	@Override
+	public void close() throws IOException {
+		container.close();
+	}
+
+}
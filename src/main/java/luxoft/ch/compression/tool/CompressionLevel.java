@@ -0,0 +1,35 @@
+package luxoft.ch.compression.tool;
+
+public enum CompressionLevel {
+
+	FAST {
+		@Override
+		TokenSelector newTokenSelector(int minTokenEntryCount) {
+			return new FastTokenSelector(minTokenEntryCount);
+		}
+
+		@Override
+		boolean discoversTokens() {
+			return false;
+		}
+	},
+	GREEDY {
+		@Override
+		TokenSelector newTokenSelector(int minTokenEntryCount) {
+			return new GreedyTokenSelector(minTokenEntryCount);
+		}
+	},
+	OPTIMAL {
+		@Override
+		TokenSelector newTokenSelector(int minTokenEntryCount) {
+			return new OptimalTokenSelector(minTokenEntryCount);
+		}
+	};
+
+	abstract TokenSelector newTokenSelector(int minTokenEntryCount);
+
+	boolean discoversTokens() {
+		return true;
+	}
+
+}
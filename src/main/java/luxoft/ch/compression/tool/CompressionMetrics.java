@@ -0,0 +1,49 @@
+package luxoft.ch.compression.tool;
+
+import java.util.concurrent.TimeUnit;
+
+public record CompressionMetrics(int blockCount, long readNanos, long discoveryNanos, long selectionNanos,
+		long collectionNanos, long writeNanos, long candidateTokenCount, long overlapCheckCount,
+		long overlapRejectionCount, long charCount, long bytesIn, long bytesOut) {
+
+	public static final CompressionMetrics EMPTY = new CompressionMetrics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+	public CompressionMetrics plus(CompressionMetrics metrics) {
+		return new CompressionMetrics(blockCount + metrics.blockCount, readNanos + metrics.readNanos,
+				discoveryNanos + metrics.discoveryNanos, selectionNanos + metrics.selectionNanos,
+				collectionNanos + metrics.collectionNanos, writeNanos + metrics.writeNanos,
+				candidateTokenCount + metrics.candidateTokenCount, overlapCheckCount + metrics.overlapCheckCount,
+				overlapRejectionCount + metrics.overlapRejectionCount, charCount + metrics.charCount,
+				bytesIn + metrics.bytesIn, bytesOut + metrics.bytesOut);
+	}
+
+	public CompressionMetrics withRead(long nanos, long bytes) {
+		return new CompressionMetrics(blockCount, readNanos + nanos, discoveryNanos, selectionNanos,
+				collectionNanos, writeNanos, candidateTokenCount, overlapCheckCount, overlapRejectionCount, charCount,
+				bytesIn + bytes, bytesOut);
+	}
+
+	public CompressionMetrics withWrite(long nanos, long bytes) {
+		return new CompressionMetrics(blockCount, readNanos, discoveryNanos, selectionNanos, collectionNanos,
+				writeNanos + nanos, candidateTokenCount, overlapCheckCount, overlapRejectionCount, charCount,
+				bytesIn, bytesOut + bytes);
+	}
+
+	public double compressionRatio() {
+		return bytesIn == 0 ? 1.0 : (double) bytesOut / bytesIn;
+	}
+
+	@Override
+	public String toString() {
+		return ("%d blocks, %d chars, %d -> %d bytes (ratio %.3f); read %d ms, discovery %d ms, selection %d ms, "
+				+ "collection %d ms, write %d ms; %d candidate tokens, %d of %d overlap checks rejected").formatted(
+						blockCount, charCount, bytesIn, bytesOut, compressionRatio(), millis(readNanos),
+						millis(discoveryNanos), millis(selectionNanos), millis(collectionNanos), millis(writeNanos),
+						candidateTokenCount, overlapRejectionCount, overlapCheckCount);
+	}
+
+	static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+}
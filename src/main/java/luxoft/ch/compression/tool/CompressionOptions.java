@@ -0,0 +1,100 @@
+package luxoft.ch.compression.tool;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.DiscoveryLimits;
+import luxoft.ch.compression.model.SharedDictionary;
+
+/**
+ * Settings of a compression run. Text is decoded with {@code charset}, which
+ * is recorded in the container and used again on decompression. The byte
+ * level engine tokenizes raw bytes instead and round-trips any file exactly;
+ * memory mapped input always uses it. Entropy coded containers additionally
+ * Huffman code every block after token substitution, and hierarchical tokens
+ * are written in terms of the shorter tokens of their block. Discovery limits
+ * bound the token search on degenerate blocks.
+ */
+public record CompressionOptions(int blockSize, int minTokenEntryCount, int threads, boolean memoryMapped,
+		boolean byteLevel, Charset charset, CompressionLevel level, SharedDictionary dictionary,
+		boolean entropyCoded, boolean hierarchicalTokens, DiscoveryLimits discoveryLimits) {
+
+	public static final CompressionOptions DEFAULT = new CompressionOptions(Dictionary.DEFAULT_BUFFER_CAPACITY, 2, 1,
+			false, false, StandardCharsets.UTF_8, CompressionLevel.GREEDY, null, false,
+			false, DiscoveryLimits.UNLIMITED);
+
+	public CompressionOptions {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("block size %d must be positive".formatted(blockSize));
+		if (minTokenEntryCount < 2)
+			throw new IllegalArgumentException(
+					"minimal token entry count %d must be at least 2".formatted(minTokenEntryCount));
+		if (threads <= 0)
+			throw new IllegalArgumentException("thread count %d must be positive".formatted(threads));
+		Objects.requireNonNull(charset, "charset must be specified");
+		Objects.requireNonNull(level, "compression level must be specified");
+		Objects.requireNonNull(discoveryLimits, "discovery limits must be specified");
+	}
+
+	public CompressionOptions withBlockSize(int blockSize) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withMinTokenEntryCount(int minTokenEntryCount) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withThreads(int threads) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withMemoryMapped(boolean memoryMapped) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withByteLevel(boolean byteLevel) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withCharset(Charset charset) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public boolean isByteLevel() {
+		return byteLevel || memoryMapped;
+	}
+
+	public CompressionOptions withLevel(CompressionLevel level) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withDictionary(SharedDictionary dictionary) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withEntropyCoded(boolean entropyCoded) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withHierarchicalTokens(boolean hierarchicalTokens) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+	public CompressionOptions withDiscoveryLimits(DiscoveryLimits discoveryLimits) {
+		return new CompressionOptions(blockSize, minTokenEntryCount, threads, memoryMapped, byteLevel, charset, level,
+				dictionary, entropyCoded, hierarchicalTokens, discoveryLimits);
+	}
+
+}
@@ -0,0 +1,108 @@
+package luxoft.ch.compression.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import luxoft.ch.compression.CompressionException;
+
+/**
+ * In-process compression of byte arrays and buffers with a fixed pool of
+ * reusable {@link Compressor} instances. Requests wait for a free compressor,
+ * so at most {@code poolSize} block buffers are ever allocated. Requests run
+ * on virtual threads when the runtime provides them and on a fixed thread pool
+ * of the same size otherwise. The build targets Java 17, which has no virtual
+ * threads, so the executor factory is looked up at run time and the fixed pool
+ * is what a Java 17 runtime gets; compressions are bounded by the pool of
+ * compressors either way.
+ */
+public class CompressionService implements AutoCloseable {
+
+	private final BlockingQueue<Compressor> compressors;
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+
+	public CompressionService(CompressionOptions options, int poolSize) {
+		this(options, poolSize, newExecutor(poolSize), true);
+	}
+
+	public CompressionService(CompressionOptions options, int poolSize, ExecutorService executor) {
+		this(options, poolSize, executor, false);
+	}
+
+	private CompressionService(CompressionOptions options, int poolSize, ExecutorService executor,
+			boolean ownExecutor) {
+		if (poolSize <= 0)
+			throw new IllegalArgumentException("pool size %d must be positive".formatted(poolSize));
+		compressors = new ArrayBlockingQueue<>(poolSize);
+		for (int index = 0; index < poolSize; index++) {
+			compressors.add(new Compressor(options));
+		}
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+	}
+
+	static ExecutorService newExecutor(int poolSize) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return Executors.newFixedThreadPool(poolSize);
+		}
+	}
+
+	public byte[] compress(byte[] source) {
+		Compressor compressor = acquire();
+		try {
+			return compressor.compress(source);
+		} finally {
+			release(compressor);
+		}
+	}
+
+	public byte[] compress(ByteBuffer source) {
+		Compressor compressor = acquire();
+		try {
+			ByteArrayOutputStream target = new ByteArrayOutputStream(source.remaining() / 2 + 64);
+			compressor.compress(source, Channels.newChannel(target));
+			return target.toByteArray();
+		} finally {
+			release(compressor);
+		}
+	}
+
+	public CompletableFuture<byte[]> submit(byte[] source) {
+		return CompletableFuture.supplyAsync(() -> compress(source), executor);
+	}
+
+	public CompletableFuture<byte[]> submit(ByteBuffer source) {
+		return CompletableFuture.supplyAsync(() -> compress(source), executor);
+	}
+
+	private Compressor acquire() {
+		try {
+			return compressors.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompressionException("interrupted while waiting for a compressor", e);
+		}
+	}
+
+	private void release(Compressor compressor) {
+		compressor.reset();
+		compressors.add(compressor);
+	}
+
+	@Override
+	public void close() {
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -1,112 +1,564 @@
 package luxoft.ch.compression.tool;
 
-import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
 import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.format.BlockInfo;
+import luxoft.ch.compression.format.ContainerReader;
+import luxoft.ch.compression.format.ContainerWriter;
+import luxoft.ch.compression.format.TokenGrammar;
 import luxoft.ch.compression.model.Dictionary;
 import luxoft.ch.compression.model.Stash;
 import luxoft.ch.compression.model.Stash.Range;
+import luxoft.ch.compression.model.SuffixArrayTokenDiscovery;
 
 public class Compressor {
 
-	private static final int MIN_TOKEN_LENGTH = 10;
-	private static final int DEFAULT_MIN_TOKEN_ENTRY_COUNT = 2;
-	private static final int MIN_NUMBER_OF_TOKEN_INDICES = 50;
-
-	private final int minTokenEntryCount;
-	private final Dictionary dictionary;
-	private final Stash stash;
+	private final String sourceFileName;
+	private final CompressionOptions options;
+	private final TokenSelector tokenSelector;
+	private final List<Stash> blocks;
+	private final Stash reusableBlock;
+	private Dictionary reusableDictionary;
+	private Dictionary grammarDictionary;
+	private TokenSelector grammarSelector;
+	private Stash.Statistics statistics;
+	private CompressionMetrics metrics;
 
 	public Compressor(String sourceFileName) {
-		this(sourceFileName, DEFAULT_MIN_TOKEN_ENTRY_COUNT);
+		this(sourceFileName, CompressionOptions.DEFAULT);
 	}
 
 	public Compressor(String sourceFileName, int minTokenEntryCount) {
-		stash = new Stash();
-		dictionary = new Dictionary();
-		dictionary.initialize(sourceFileName);
-		this.minTokenEntryCount = minTokenEntryCount;
+		this(sourceFileName, CompressionOptions.DEFAULT.withMinTokenEntryCount(minTokenEntryCount));
+	}
+
+	public Compressor(String sourceFileName, CompressionOptions options) {
+		this.sourceFileName = sourceFileName;
+		this.options = options;
+		final TokenSelector blockSelector = options.level().newTokenSelector(options.minTokenEntryCount());
+		tokenSelector = options.dictionary() == null ? blockSelector
+				: new SharedTokenSelector(options.dictionary(), blockSelector);
+		blocks = new ArrayList<>();
+		reusableBlock = new Stash();
+		statistics = Stash.Statistics.EMPTY;
+		metrics = CompressionMetrics.EMPTY;
+	}
+
+	public Compressor(CompressionOptions options) {
+		this(null, options);
 	}
 
 	public int getMinTokenEntryCount() {
-		return minTokenEntryCount;
+		return options.minTokenEntryCount();
+	}
+
+	public CompressionOptions getOptions() {
+		return options;
 	}
 
 	public Stash.Statistics getStatistics() {
-		return stash.getStatistics();
+		return statistics;
+	}
+
+	public CompressionMetrics getMetrics() {
+		return metrics;
 	}
 
 	public SortedSet<String> getTokens() {
-		return stash.getTokens();
+		return getTokens(Comparator.naturalOrder());
 	}
 
 	public SortedSet<String> getTokens(Comparator<String> comparator) {
-		return stash.getTokens(comparator);
+		return blocks.stream().flatMap(block -> block.getTokens(comparator).stream()).sorted(comparator)
+				.collect(Collectors.toCollection(TreeSet::new));
 	}
 
 	public SortedSet<Range> getRanges() {
-		return stash.getRanges();
+		return getRanges(Comparator.naturalOrder());
 	}
 
 	public SortedSet<Range> getRanges(Comparator<Range> comparator) {
-		return stash.getRanges(comparator);
+		SortedSet<Range> ranges = new TreeSet<>();
+		int offset = 0;
+		for (var block : blocks) {
+			for (var range : block.getRanges(comparator)) {
+				ranges.add(new Range(range.token(), range.start() + offset, range.end() + offset));
+			}
+			offset += block.getCharCount();
+		}
+		return ranges;
 	}
 
 	public void save(String targetFileName) {
-		try (ObjectOutputStream outStream = new ObjectOutputStream(
-				new BufferedOutputStream(new FileOutputStream(new File(targetFileName))))) {
-			outStream.writeObject(stash);
+		try (ContainerWriter writer = ContainerWriter.open(targetFileName, options.isByteLevel(),
+				options.charset(), options.dictionary(), options.entropyCoded(), grammar())) {
+			final long start = System.nanoTime();
+			for (var block : blocks) {
+				writer.write(block);
+			}
+			writer.finish();
+			metrics = metrics.withWrite(System.nanoTime() - start, writer.size());
 		} catch (IOException e) {
 			throw new CompressionException("cannot open file %s".formatted(targetFileName), e);
 		}
 	}
 
+	public void reset() {
+		blocks.clear();
+		reusableBlock.clear();
+		if (reusableDictionary != null) {
+			reusableDictionary.reset();
+		}
+		statistics = Stash.Statistics.EMPTY;
+		metrics = CompressionMetrics.EMPTY;
+	}
+
 	public void compress() {
-		dictionary.growLargerTokens();
-		formSetOfTokensAndChain();
-		collectUncompressedData();
+		reset();
+		try (BlockSource source = openSource()) {
+			metrics = metrics.withRead(0, Files.size(Paths.get(sourceFileName)));
+			compressBlocks(source, blocks::add, false);
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
 	}
 
-	private void collectUncompressedData() {
-		List<char[]> uncompressedRanges = new ArrayList<>();
-		int start = 0;
-		for (var compressedRange : stash.getRanges()) {
-			uncompressedRanges.add(dictionary.getChars(start, compressedRange.start() - start));
-			start = compressedRange.end() + 1;
+	public void compress(String targetFileName) {
+		reset();
+		try (BlockSource source = openSource();
+				ContainerWriter writer = ContainerWriter.open(targetFileName, options.isByteLevel(),
+						options.charset(), options.dictionary(), options.entropyCoded(), grammar())) {
+			metrics = metrics.withRead(0, Files.size(Paths.get(sourceFileName)));
+			compressBlocks(source, writer::write, true);
+			writer.finish();
+			metrics = metrics.withWrite(0, writer.size());
+		} catch (IOException e) {
+			throw new CompressionException(
+					"cannot compress file %s into %s".formatted(sourceFileName, targetFileName), e);
+		} finally {
+			reusableBlock.clear();
 		}
-		uncompressedRanges.add(dictionary.getChars(start));
-		stash.addUncompressedData(uncompressedRanges);
 	}
 
-	private void formSetOfTokensAndChain() {
-		var indices = new ArrayList<Integer>(MIN_NUMBER_OF_TOKEN_INDICES);
-		for (var iter = dictionary.getTokensByTotalSpaceReversed(MIN_TOKEN_LENGTH).iterator(); iter.hasNext();) {
-			Entry<String, List<Integer>> token = iter.next();
-			int tokenEntryCount = 0;
-			indices.clear();
-			for (var startPosition : token.getValue()) {
-				final int endPosition = getEndPosition(token, startPosition);
-				if (stash.isTokenEntryMayBeApplied(startPosition, endPosition)) {
-					indices.add(startPosition);
-					tokenEntryCount++;
+	/**
+	 * Appends the source to a compressed file. A short last block is decoded and
+	 * compressed again together with the appended text, but only when the
+	 * appended data is at least as large as that block; smaller appends seal it
+	 * and start a new block, so an append costs time in proportion to the data
+	 * appended rather than to the block size.
+	 */
+	public void append(String targetFileName) {
+		reset();
+		final String carriedText;
+		final int retainedBlockCount;
+		try (ContainerReader reader = ContainerReader.open(targetFileName, options.dictionary())) {
+			final List<BlockInfo> index = reader.readIndex();
+			final BlockInfo lastBlock = index.isEmpty() ? null : index.get(index.size() - 1);
+			if (lastBlock != null && lastBlock.charCount() < options.blockSize() && !options.isByteLevel()
+					&& Files.size(Paths.get(sourceFileName)) >= lastBlock.charCount()) {
+				StringBuilder builder = new StringBuilder(lastBlock.charCount());
+				reader.read(lastBlock).appendTo(builder, 0, lastBlock.charCount());
+				carriedText = builder.toString();
+				retainedBlockCount = index.size() - 1;
+			} else {
+				carriedText = "";
+				retainedBlockCount = index.size();
+			}
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(targetFileName), e);
+		}
+		try (BlockSource source = openSource(carriedText);
+				ContainerWriter writer = ContainerWriter.append(targetFileName, retainedBlockCount,
+						options.isByteLevel(), options.charset(), options.dictionary(), options.entropyCoded(),
+						grammar())) {
+			metrics = metrics.withRead(0, Files.size(Paths.get(sourceFileName)));
+			compressBlocks(source, writer::write, true);
+			writer.finish();
+			metrics = metrics.withWrite(0, writer.size());
+		} catch (IOException e) {
+			throw new CompressionException(
+					"cannot append file %s to %s".formatted(sourceFileName, targetFileName), e);
+		} finally {
+			reusableBlock.clear();
+		}
+	}
+
+	public void compress(ByteBuffer source, WritableByteChannel target) {
+		reset();
+		metrics = metrics.withRead(0, source.remaining());
+		try (BlockSource blockSource = openSource(source)) {
+			ContainerWriter writer = new ContainerWriter(target, options.isByteLevel(), options.charset(),
+					options.dictionary(), options.entropyCoded(), grammar());
+			compressBlocks(blockSource, writer::write, true);
+			writer.finish();
+			metrics = metrics.withWrite(0, writer.size());
+		} catch (IOException e) {
+			throw new CompressionException("cannot write compressed data", e);
+		} finally {
+			reusableBlock.clear();
+		}
+	}
+
+	public byte[] compress(byte[] source) {
+		ByteArrayOutputStream target = new ByteArrayOutputStream(source.length / 2 + 64);
+		compress(ByteBuffer.wrap(source), Channels.newChannel(target));
+		return target.toByteArray();
+	}
+
+	@FunctionalInterface
+	private interface BlockConsumer {
+
+		void accept(Stash block) throws IOException;
+
+	}
+
+	private record CompressedBlock(Stash stash, CompressionMetrics metrics) {
+	}
+
+	private interface BlockSource extends Closeable {
+
+		boolean next(Dictionary dictionary) throws IOException;
+
+	}
+
+	private static class ReaderBlockSource implements BlockSource {
+
+		private final Reader reader;
+		private final Charset charset;
+
+		private ReaderBlockSource(InputStream input, Charset charset) {
+			reader = new BufferedReader(new InputStreamReader(input, charset.newDecoder()));
+			this.charset = charset;
+		}
+
+		@Override
+		public boolean next(Dictionary dictionary) throws IOException {
+			try {
+				return dictionary.initialize(reader);
+			} catch (CharacterCodingException e) {
+				throw new CompressionException(
+						"source is not %s text, it should be compressed at byte level".formatted(charset.name()), e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+
+	}
+
+	private static class ByteBufferBlockSource implements BlockSource {
+
+		private final ByteBuffer bytes;
+		private final int blockSize;
+
+		private ByteBufferBlockSource(ByteBuffer bytes, int blockSize) {
+			this.bytes = bytes;
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public boolean next(Dictionary dictionary) {
+			final int size = Math.min(blockSize, bytes.remaining());
+			if (size <= 0) {
+				return false;
+			}
+			dictionary.initialize(bytes.slice().limit(size));
+			bytes.position(bytes.position() + size);
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	private static class DecodingBlockSource implements BlockSource {
+
+		private final ByteBuffer bytes;
+		private final CharsetDecoder decoder;
+		private final CharBuffer chars;
+		private boolean flushed;
+
+		private DecodingBlockSource(ByteBuffer bytes, Charset charset, int blockSize) {
+			this.bytes = bytes;
+			decoder = charset.newDecoder();
+			chars = CharBuffer.allocate(blockSize);
+		}
+
+		@Override
+		public boolean next(Dictionary dictionary) {
+			chars.clear();
+			try {
+				while (!flushed) {
+					CoderResult result = decoder.decode(bytes, chars, true);
+					if (result.isUnderflow()) {
+						result = decoder.flush(chars);
+						flushed = result.isUnderflow();
+					}
+					if (result.isError()) {
+						result.throwException();
+					}
+					if (result.isOverflow()) {
+						break;
+					}
 				}
+			} catch (CharacterCodingException e) {
+				throw new CompressionException("source is not %s text, it should be compressed at byte level"
+						.formatted(decoder.charset().name()), e);
 			}
-			if (tokenEntryCount >= getMinTokenEntryCount()) {
-				stash.add(token.getKey(), indices);
+			return dictionary.initialize(chars.flip());
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	private static class ChannelBlockSource implements BlockSource {
+
+		private final FileChannel channel;
+		private final int blockSize;
+
+		private ChannelBlockSource(String sourceFileName, int blockSize) throws IOException {
+			channel = FileChannel.open(Paths.get(sourceFileName), StandardOpenOption.READ);
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public boolean next(Dictionary dictionary) throws IOException {
+			final long size = Math.min(blockSize, channel.size() - channel.position());
+			if (size <= 0) {
+				return false;
 			}
+			ByteBuffer bytes = ByteBuffer.allocate((int) size);
+			while (bytes.hasRemaining()) {
+				if (channel.read(bytes) < 0) {
+					break;
+				}
+			}
+			dictionary.initialize(bytes.flip());
+			return true;
 		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
 	}
 
-	private int getEndPosition(Entry<String, List<Integer>> token, int startPosition) {
-		return startPosition + token.getKey().length() - 1;
+	private static class MappedBlockSource implements BlockSource {
+
+		private final FileChannel channel;
+		private final int blockSize;
+		private long position;
+
+		private MappedBlockSource(String sourceFileName, int blockSize) throws IOException {
+			channel = FileChannel.open(Paths.get(sourceFileName), StandardOpenOption.READ);
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public boolean next(Dictionary dictionary) throws IOException {
+			final long size = Math.min(blockSize, channel.size() - position);
+			if (size <= 0) {
+				return false;
+			}
+			dictionary.initialize(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+			position += size;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+	private void compressBlocks(BlockSource source, BlockConsumer consumer, boolean reuseBlocks) throws IOException {
+		if (options.threads() == 1) {
+			if (reusableDictionary == null) {
+				reusableDictionary = newDictionary();
+			}
+			while (nextBlock(source, reusableDictionary)) {
+				Stash block = reuseBlocks ? reusableBlock : new Stash();
+				block.clear();
+				accept(consumer, compressBlock(reusableDictionary, block));
+			}
+		} else {
+			compressBlocksInParallel(source, consumer);
+		}
+	}
+
+	private void compressBlocksInParallel(BlockSource source, BlockConsumer consumer) throws IOException {
+		final int maxPendingBlocks = 2 * options.threads();
+		ForkJoinPool pool = new ForkJoinPool(options.threads());
+		try {
+			Deque<ForkJoinTask<CompressedBlock>> pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+			Dictionary dictionary = newDictionary();
+			while (nextBlock(source, dictionary)) {
+				final Dictionary blockDictionary = dictionary;
+				pendingBlocks.add(pool.submit(() -> compressBlock(blockDictionary, new Stash())));
+				if (pendingBlocks.size() >= maxPendingBlocks) {
+					accept(consumer, pendingBlocks.poll().join());
+				}
+				dictionary = newDictionary();
+			}
+			while (!pendingBlocks.isEmpty()) {
+				accept(consumer, pendingBlocks.poll().join());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private boolean nextBlock(BlockSource source, Dictionary dictionary) throws IOException {
+		final long start = System.nanoTime();
+		final boolean hasBlock = source.next(dictionary);
+		metrics = metrics.withRead(System.nanoTime() - start, 0);
+		return hasBlock;
+	}
+
+	private void accept(BlockConsumer consumer, CompressedBlock block) throws IOException {
+		statistics = statistics.plus(block.stash().getStatistics());
+		metrics = metrics.plus(block.metrics());
+		final long start = System.nanoTime();
+		consumer.accept(block.stash());
+		metrics = metrics.withWrite(System.nanoTime() - start, 0);
+	}
+
+	private BlockSource openSource() throws IOException {
+		if (sourceFileName == null)
+			throw new IllegalStateException("compressor has no source file");
+		if (options.memoryMapped()) {
+			return new MappedBlockSource(sourceFileName, options.blockSize());
+		}
+		if (options.byteLevel()) {
+			return new ChannelBlockSource(sourceFileName, options.blockSize());
+		}
+		return new ReaderBlockSource(new FileInputStream(sourceFileName), options.charset());
+	}
+
+	private BlockSource openSource(String carriedText) throws IOException {
+		if (carriedText.isEmpty()) {
+			return openSource();
+		}
+		if (sourceFileName == null)
+			throw new IllegalStateException("compressor has no source file");
+		return new ReaderBlockSource(new SequenceInputStream(
+				new ByteArrayInputStream(carriedText.getBytes(options.charset())), new FileInputStream(sourceFileName)),
+				options.charset());
+	}
+
+	private BlockSource openSource(ByteBuffer source) throws IOException {
+		if (options.isByteLevel()) {
+			return new ByteBufferBlockSource(source.slice(), options.blockSize());
+		}
+		return new DecodingBlockSource(source.slice(), options.charset(), options.blockSize());
+	}
+
+	private TokenGrammar grammar() {
+		return options.hierarchicalTokens() ? this::deriveTokenGrammar : null;
+	}
+
+	private Stash deriveTokenGrammar(CharSequence tokenTable) {
+		if (grammarDictionary == null) {
+			grammarDictionary = newDictionary();
+			grammarSelector = options.level().newTokenSelector(options.minTokenEntryCount());
+		}
+		grammarDictionary.initialize(CharBuffer.wrap(tokenTable));
+		if (options.level().discoversTokens()) {
+			grammarDictionary.growLargerTokens();
+		}
+		Stash rules = new Stash();
+		grammarSelector.formSetOfTokensAndChain(grammarDictionary, rules);
+		collectUncompressedData(grammarDictionary, rules);
+		return rules;
+	}
+
+	private Dictionary newDictionary() {
+		return new Dictionary(new SuffixArrayTokenDiscovery(options.discoveryLimits()), options.blockSize());
+	}
+
+	private CompressedBlock compressBlock(Dictionary dictionary, Stash stash) {
+		BlockCompressionEvent event = new BlockCompressionEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		if (options.level().discoversTokens()) {
+			dictionary.growLargerTokens();
+		}
+		final long discovered = System.nanoTime();
+		tokenSelector.formSetOfTokensAndChain(dictionary, stash);
+		final long selected = System.nanoTime();
+		collectUncompressedData(dictionary, stash);
+		final long collected = System.nanoTime();
+		final int candidateTokenCount = dictionary.getTokenTable().size();
+		event.end();
+		if (event.shouldCommit()) {
+			final Stash.Statistics blockStatistics = stash.getStatistics();
+			event.charCount = dictionary.getCharCount();
+			event.candidateTokenCount = candidateTokenCount;
+			event.tokenCount = blockStatistics.tokenCount();
+			event.entryCount = blockStatistics.entryCount();
+			event.overlapCheckCount = stash.getOverlapCheckCount();
+			event.overlapRejectionCount = stash.getOverlapRejectionCount();
+			event.discoveryNanos = discovered - start;
+			event.selectionNanos = selected - discovered;
+			event.collectionNanos = collected - selected;
+			event.commit();
+		}
+		return new CompressedBlock(stash, new CompressionMetrics(1, 0, discovered - start, selected - discovered,
+				collected - selected, 0, candidateTokenCount, stash.getOverlapCheckCount(),
+				stash.getOverlapRejectionCount(), dictionary.getCharCount(), 0, 0));
+	}
+
+	private void collectUncompressedData(Dictionary dictionary, Stash stash) {
+		List<char[]> uncompressedRanges = new ArrayList<>();
+		int start = 0;
+		for (var compressedRange : stash.getRanges()) {
+			uncompressedRanges.add(dictionary.getChars(start, compressedRange.start() - start));
+			start = compressedRange.end() + 1;
+		}
+		uncompressedRanges.add(dictionary.getChars(start));
+		stash.addUncompressedData(uncompressedRanges);
 	}
 
 }
@@ -0,0 +1,26 @@
+package luxoft.ch.compression.tool;
+
+public record DecompressionMetrics(int blockCount, long readNanos, long writeNanos, long bytesIn, long charCount,
+		long bytesOut) {
+
+	public static final DecompressionMetrics EMPTY = new DecompressionMetrics(0, 0, 0, 0, 0, 0);
+
+	public DecompressionMetrics plus(DecompressionMetrics metrics) {
+		return new DecompressionMetrics(blockCount + metrics.blockCount, readNanos + metrics.readNanos,
+				writeNanos + metrics.writeNanos, bytesIn + metrics.bytesIn, charCount + metrics.charCount,
+				bytesOut + metrics.bytesOut);
+	}
+
+	public DecompressionMetrics withWrite(long nanos, long bytes) {
+		return new DecompressionMetrics(blockCount, readNanos, writeNanos + nanos, bytesIn, charCount,
+				bytesOut + bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "%d blocks, %d bytes -> %d chars, %d bytes written; read %d ms, write %d ms".formatted(blockCount,
+				bytesIn, charCount, bytesOut, CompressionMetrics.millis(readNanos),
+				CompressionMetrics.millis(writeNanos));
+	}
+
+}
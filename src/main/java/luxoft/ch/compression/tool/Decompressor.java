@@ -1,55 +1,519 @@
 package luxoft.ch.compression.tool;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.PrintWriter;
-import java.io.Writer;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.format.BlockInfo;
+import luxoft.ch.compression.format.ContainerReader;
+import luxoft.ch.compression.format.EncodedBlock;
+import luxoft.ch.compression.model.SharedDictionary;
 import luxoft.ch.compression.model.Stash;
 
 public class Decompressor {
 
+	private static final class ScannedBlock {
+
+		private final Stash stash;
+		private final int charCount;
+		private String text;
+
+		ScannedBlock(Stash stash) {
+			this.stash = stash;
+			charCount = stash.getCharCount();
+		}
+
+		String getText() throws IOException {
+			if (text == null) {
+				StringBuilder builder = new StringBuilder(charCount);
+				stash.appendTo(builder, 0, charCount);
+				text = builder.toString();
+			}
+			return text;
+		}
+
+	}
+
+	/**
+	 * Blocks in file order with decompression metrics. With a cache they are
+	 * looked up by their index entries, otherwise read sequentially.
+	 */
+	private final class BlockSource {
+
+		private final ContainerReader reader;
+		private final BlockCache.FileIdentity file;
+		private final List<BlockInfo> index;
+		private int block;
+		private Stash next;
+
+		BlockSource(ContainerReader reader) throws IOException {
+			this.reader = reader;
+			if (cache != null && reader.hasIndex()) {
+				file = BlockCache.identify(sourceFileName);
+				index = reader.readIndex();
+			} else {
+				file = null;
+				index = null;
+			}
+			next = readBlock();
+		}
+
+		boolean hasNext() {
+			return next != null;
+		}
+
+		Stash next() throws IOException {
+			final Stash stash = next;
+			next = readBlock();
+			return stash;
+		}
+
+		private Stash readBlock() throws IOException {
+			if (index == null) {
+				return Decompressor.this.readBlock(reader::read);
+			}
+			if (block == index.size()) {
+				return null;
+			}
+			final BlockInfo info = index.get(block++);
+			return Decompressor.this.readBlock(() -> cache.get(file, info.offset(), () -> reader.read(info)));
+		}
+
+	}
+
+	/**
+	 * Block encoded for the target file. Surrogates cut off by the block bounds
+	 * are kept apart, since the pairs they form are encoded only when the
+	 * neighbouring blocks are placed.
+	 */
+	private record TargetBlock(ByteBuffer bytes, String leadingSurrogate, String trailingSurrogate,
+			DecompressionMetrics metrics) {
+	}
+
+	/**
+	 * Places encoded blocks one after another, joining the surrogate pairs
+	 * split between them.
+	 */
+	private static final class TargetWriter {
+
+		private final FileChannel channel;
+		private final Charset charset;
+		private long position;
+		private String highSurrogate;
+
+		TargetWriter(FileChannel channel, Charset charset) {
+			this.channel = channel;
+			this.charset = charset;
+			highSurrogate = "";
+		}
+
+		void write(TargetBlock block) throws IOException {
+			write(highSurrogate + block.leadingSurrogate());
+			if (block.bytes() == null) {
+				position += block.metrics().bytesOut();
+			} else {
+				write(block.bytes());
+			}
+			highSurrogate = block.trailingSurrogate();
+		}
+
+		long finish() throws IOException {
+			write(highSurrogate);
+			highSurrogate = "";
+			return position;
+		}
+
+		private void write(String text) throws IOException {
+			if (!text.isEmpty()) {
+				write(charset.encode(text));
+			}
+		}
+
+		private void write(ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) {
+				position += channel.write(bytes, position);
+			}
+		}
+
+	}
+
 	private final String sourceFileName;
-	private Stash stash;
+	private final SharedDictionary dictionary;
+	private final BlockCache cache;
+	private List<Stash> blocks;
+	private Charset charset;
+	private List<BlockInfo> blockIndex;
+	private BlockCache.FileIdentity blockIndexFile;
+	private DecompressionMetrics metrics;
 
 	public Decompressor(String sourceFileName) {
+		this(sourceFileName, null);
+	}
+
+	public Decompressor(String sourceFileName, SharedDictionary dictionary) {
+		this(sourceFileName, dictionary, null);
+	}
+
+	/**
+	 * Decompressor taking decoded blocks from the cache, so repeated reads of the
+	 * same file skip parsing and decoding.
+	 */
+	public Decompressor(String sourceFileName, SharedDictionary dictionary, BlockCache cache) {
 		this.sourceFileName = sourceFileName;
+		this.dictionary = dictionary;
+		this.cache = cache;
+		metrics = DecompressionMetrics.EMPTY;
+	}
+
+	public DecompressionMetrics getMetrics() {
+		return metrics;
 	}
 
 	public void decompress() {
-		try (ObjectInputStream inStream = new ObjectInputStream(
-				new BufferedInputStream(new FileInputStream(new File(sourceFileName))))) {
-			stash = (Stash) inStream.readObject();
-		} catch (IOException | ClassNotFoundException e) {
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			blocks = new ArrayList<>();
+			charset = reader.getCharset();
+			metrics = new DecompressionMetrics(0, 0, 0, Files.size(Paths.get(sourceFileName)), 0, 0);
+			for (BlockSource source = new BlockSource(reader); source.hasNext();) {
+				blocks.add(source.next());
+			}
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+	}
+
+	public int verify() {
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			return reader.verify();
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+	}
+
+	public long getCharCount() {
+		final var index = getBlockIndex();
+		return index.isEmpty() ? 0 : index.get(index.size() - 1).charEnd();
+	}
+
+	public String read(long offset, int length) {
+		if (offset < 0 || length < 0)
+			throw new IllegalArgumentException("offset %d and length %d must not be negative".formatted(offset, length));
+		final long end = offset + length;
+		StringBuilder builder;
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			final var index = getBlockIndex(reader);
+			final long charCount = index.isEmpty() ? 0 : index.get(index.size() - 1).charEnd();
+			builder = new StringBuilder((int) Math.min(length, Math.max(0, charCount - offset)));
+			final BlockCache.FileIdentity file = cache == null ? null : BlockCache.identify(sourceFileName);
+			for (int block = findBlock(index, offset); block < index.size()
+					&& index.get(block).charOffset() < end; block++) {
+				final BlockInfo info = index.get(block);
+				final Stash stash = file == null ? reader.read(info)
+						: cache.get(file, info.offset(), () -> reader.read(info));
+				stash.appendTo(builder, (int) Math.max(offset - info.charOffset(), 0),
+						(int) Math.min(end - info.charOffset(), info.charCount()));
+			}
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+		return builder.toString();
+	}
+
+	public List<Long> search(String pattern) {
+		TextSearch search = new TextSearch(pattern, false);
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			for (BlockSource source = new BlockSource(reader); source.hasNext();) {
+				search.scan(source.next());
+			}
+			search.finish();
+		} catch (IOException e) {
 			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
 		}
+		return search.getMatches();
+	}
+
+	/**
+	 * Lines holding the pattern. They are cut from the blocks just scanned, which
+	 * are kept only while the current line starts in them and expanded only when
+	 * a matching line lies in them.
+	 */
+	public List<String> grep(String pattern) {
+		TextSearch search = new TextSearch(pattern, true);
+		List<String> lines = new ArrayList<>();
+		Deque<ScannedBlock> window = new ArrayDeque<>();
+		long windowOffset = 0;
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			for (BlockSource source = new BlockSource(reader); source.hasNext();) {
+				final Stash stash = source.next();
+				window.add(new ScannedBlock(stash));
+				search.scan(stash);
+				collectLines(search, window, windowOffset, lines);
+				while (!window.isEmpty() && windowOffset + window.peek().charCount <= search.getLineStart()) {
+					windowOffset += window.poll().charCount;
+				}
+			}
+			search.finish();
+			collectLines(search, window, windowOffset, lines);
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+		return lines;
+	}
+
+	private static void collectLines(TextSearch search, Deque<ScannedBlock> window, long windowOffset,
+			List<String> lines) throws IOException {
+		final var lineRanges = search.getLineRanges();
+		for (int line = lines.size(); line < lineRanges.size(); line++) {
+			final long start = lineRanges.get(line)[0];
+			final long end = lineRanges.get(line)[1];
+			StringBuilder builder = new StringBuilder((int) (end - start));
+			long blockOffset = windowOffset;
+			for (var block : window) {
+				if (blockOffset >= end) {
+					break;
+				}
+				if (blockOffset + block.charCount > start) {
+					builder.append(block.getText(), (int) Math.max(start - blockOffset, 0),
+							(int) Math.min(end - blockOffset, block.charCount));
+				}
+				blockOffset += block.charCount;
+			}
+			lines.add(builder.toString());
+		}
+	}
+
+	private List<BlockInfo> getBlockIndex() {
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			return getBlockIndex(reader);
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+	}
+
+	/**
+	 * Block index of the file as it is now. The index read last is kept until
+	 * the file changes, so an append to the file is seen by the next access.
+	 */
+	private List<BlockInfo> getBlockIndex(ContainerReader reader) throws IOException {
+		final BlockCache.FileIdentity file = BlockCache.identify(sourceFileName);
+		if (blockIndex == null || !file.equals(blockIndexFile)) {
+			blockIndex = reader.readIndex();
+			blockIndexFile = file;
+		}
+		return blockIndex;
+	}
+
+	private static int findBlock(List<BlockInfo> index, long offset) {
+		int low = 0;
+		int high = index.size() - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (index.get(middle).charOffset() <= offset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	public Reader openReader() {
+		try {
+			return new BlockTextReader(ContainerReader.open(sourceFileName, dictionary));
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+	}
+
+	public long transferTo(WritableByteChannel target) {
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary)) {
+			TextEncoder encoder = new TextEncoder(target, reader.getCharset());
+			metrics = new DecompressionMetrics(0, 0, 0, Files.size(Paths.get(sourceFileName)), 0, 0);
+			for (BlockSource source = new BlockSource(reader); source.hasNext();) {
+				final Stash stash = source.next();
+				final long start = System.nanoTime();
+				save(stash, encoder);
+				metrics = metrics.withWrite(System.nanoTime() - start, 0);
+			}
+			final long start = System.nanoTime();
+			final long byteCount = encoder.finish();
+			metrics = metrics.withWrite(System.nanoTime() - start, byteCount);
+			return byteCount;
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(sourceFileName), e);
+		}
+	}
+
+	/**
+	 * Decodes blocks on several threads straight into the target file with
+	 * positional writes. Byte-level blocks fill a presized file, each from its
+	 * own thread; text blocks are encoded in parallel and placed in order, since
+	 * their byte offsets follow from the encoded sizes of all previous blocks.
+	 */
+	public long decompressTo(String targetFileName, int threads) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("thread count %d must be positive".formatted(threads));
+		try (ContainerReader reader = ContainerReader.open(sourceFileName, dictionary);
+				FileChannel channel = FileChannel.open(Paths.get(targetFileName), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (!encodesBlocksApart(reader.getCharset())) {
+				return transferTo(channel);
+			}
+			metrics = new DecompressionMetrics(0, 0, 0, Files.size(Paths.get(sourceFileName)), 0, 0);
+			if (reader.isByteLevel() && reader.hasIndex()) {
+				final var index = reader.readIndex();
+				if (!index.isEmpty()) {
+					channel.write(ByteBuffer.allocate(1), index.get(index.size() - 1).charEnd() - 1);
+				}
+			}
+			return decompressInParallel(reader, channel, threads);
+		} catch (IOException e) {
+			throw new CompressionException("cannot open file %s".formatted(targetFileName), e);
+		}
+	}
+
+	private long decompressInParallel(ContainerReader reader, FileChannel channel, int threads) throws IOException {
+		final Charset targetCharset = reader.getCharset();
+		final FileChannel blockChannel = reader.isByteLevel() ? channel : null;
+		final int maxPendingBlocks = 2 * threads;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			Deque<ForkJoinTask<TargetBlock>> pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+			TargetWriter writer = new TargetWriter(channel, targetCharset);
+			long charOffset = 0;
+			for (EncodedBlock block = readEncoded(reader); block != null; block = readEncoded(reader)) {
+				final EncodedBlock encodedBlock = block;
+				final long blockOffset = charOffset;
+				pendingBlocks.add(pool.submit(
+						() -> decodeBlock(reader, encodedBlock, targetCharset, blockChannel, blockOffset)));
+				charOffset += block.charCount();
+				if (pendingBlocks.size() >= maxPendingBlocks) {
+					place(pendingBlocks.poll().join(), writer);
+				}
+			}
+			while (!pendingBlocks.isEmpty()) {
+				place(pendingBlocks.poll().join(), writer);
+			}
+			final long start = System.nanoTime();
+			final long byteCount = writer.finish();
+			metrics = metrics.withWrite(System.nanoTime() - start, byteCount - metrics.bytesOut());
+			return byteCount;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private EncodedBlock readEncoded(ContainerReader reader) throws IOException {
+		final long start = System.nanoTime();
+		final EncodedBlock block = reader.readEncoded();
+		metrics = metrics.plus(new DecompressionMetrics(0, System.nanoTime() - start, 0, 0, 0, 0));
+		return block;
+	}
+
+	private static TargetBlock decodeBlock(ContainerReader reader, EncodedBlock encodedBlock, Charset charset,
+			FileChannel channel, long charOffset) throws IOException {
+		BlockDecompressionEvent event = new BlockDecompressionEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final Stash stash = reader.decode(encodedBlock);
+		final long decoded = System.nanoTime();
+		event.end();
+		final int charCount = encodedBlock.charCount();
+		if (event.shouldCommit()) {
+			event.charCount = charCount;
+			event.entryCount = stash.getStatistics().entryCount();
+			event.commit();
+		}
+		StringBuilder text = new StringBuilder(charCount);
+		stash.appendTo(text, 0, charCount);
+		final int from = charCount > 0 && Character.isLowSurrogate(text.charAt(0)) ? 1 : 0;
+		final int to = charCount > from && Character.isHighSurrogate(text.charAt(charCount - 1)) ? charCount - 1
+				: charCount;
+		ByteBuffer bytes = charset.encode(CharBuffer.wrap(text, from, to));
+		final int byteCount = bytes.remaining();
+		if (channel != null) {
+			for (long position = charOffset; bytes.hasRemaining();) {
+				position += channel.write(bytes, position);
+			}
+			bytes = null;
+		}
+		return new TargetBlock(bytes, text.substring(0, from), text.substring(to),
+				new DecompressionMetrics(1, decoded - start, System.nanoTime() - decoded, 0, charCount, byteCount));
+	}
+
+	private void place(TargetBlock block, TargetWriter writer) throws IOException {
+		final long start = System.nanoTime();
+		writer.write(block);
+		metrics = metrics.plus(block.metrics()).withWrite(System.nanoTime() - start, 0);
+	}
+
+	/**
+	 * Whether the charset encodes a text in pieces to the same bytes as a whole,
+	 * which fails for charsets writing a byte order mark.
+	 */
+	private static boolean encodesBlocksApart(Charset charset) {
+		return charset.canEncode() && charset.encode("aa").remaining() == 2 * charset.encode("a").remaining();
 	}
 
 	public void save(String targetFileName) {
-		if (stash == null)
+		if (blocks == null)
 			throw new IllegalStateException("must decompress source data before saving result");
-		try (Writer writer = new PrintWriter(
-				new BufferedOutputStream(new FileOutputStream(new File(targetFileName))))) {
-			int position = 0;
-			for (var rangeIter = stash.getUncompressedRangesIterator(); rangeIter.hasNext();) {
-				char[] range = rangeIter.next();
-				writer.write(String.valueOf(range));
-				position += range.length;
-				if (rangeIter.hasNext()) {
-					String token = stash.findTokenByStartPosition(position);
-					writer.write(token);
-					position += token.length();
-				}
+		try (FileChannel channel = FileChannel.open(Paths.get(targetFileName), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long start = System.nanoTime();
+			TextEncoder encoder = new TextEncoder(channel, charset);
+			for (var stash : blocks) {
+				save(stash, encoder);
 			}
+			final long byteCount = encoder.finish();
+			metrics = metrics.withWrite(System.nanoTime() - start, byteCount);
 		} catch (IOException e) {
 			throw new CompressionException("cannot open file %s".formatted(targetFileName), e);
 		}
 	}
 
+	private Stash readBlock(BlockCache.Loader loader) throws IOException {
+		BlockDecompressionEvent event = new BlockDecompressionEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final Stash stash = loader.load();
+		final long nanos = System.nanoTime() - start;
+		if (stash == null) {
+			metrics = metrics.plus(new DecompressionMetrics(0, nanos, 0, 0, 0, 0));
+			return null;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.charCount = stash.getCharCount();
+			event.entryCount = stash.getStatistics().entryCount();
+			event.commit();
+		}
+		metrics = metrics.plus(new DecompressionMetrics(1, nanos, 0, 0, stash.getCharCount(), 0));
+		return stash;
+	}
+
+	private static void save(Stash stash, TextEncoder encoder) throws IOException {
+		var tokenIter = stash.getReferencedTokensIterator();
+		for (var rangeIter = stash.getUncompressedRangesIterator(); rangeIter.hasNext();) {
+			encoder.write(rangeIter.next());
+			if (rangeIter.hasNext()) {
+				encoder.write(tokenIter.next());
+			}
+		}
+	}
+
 }
@@ -0,0 +1,82 @@
+package luxoft.ch.compression.tool;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.model.Stash;
+import luxoft.ch.compression.model.SuffixArrayTokenDiscovery;
+
+/**
+ * Builds a {@link SharedDictionary} from sample documents. Samples are packed
+ * into blocks so that repeats across documents are found, and the tokens
+ * saving most space over all blocks are kept.
+ */
+public class DictionaryTrainer {
+
+	public static final int DEFAULT_MAX_TOKEN_COUNT = 16384;
+
+	private final CompressionOptions options;
+	private final int maxTokenCount;
+	private final Map<String, Long> savedSpace;
+
+	public DictionaryTrainer() {
+		this(CompressionOptions.DEFAULT, DEFAULT_MAX_TOKEN_COUNT);
+	}
+
+	public DictionaryTrainer(CompressionOptions options, int maxTokenCount) {
+		if (maxTokenCount <= 0)
+			throw new IllegalArgumentException("maximal token count %d must be positive".formatted(maxTokenCount));
+		this.options = options;
+		this.maxTokenCount = maxTokenCount;
+		savedSpace = new HashMap<>();
+	}
+
+	public SharedDictionary train(List<String> sampleFileNames) {
+		savedSpace.clear();
+		Dictionary dictionary = new Dictionary(new SuffixArrayTokenDiscovery(options.discoveryLimits()),
+				options.blockSize());
+		TokenSelector tokenSelector = options.level().newTokenSelector(options.minTokenEntryCount());
+		StringBuilder samples = new StringBuilder();
+		for (var sampleFileName : sampleFileNames) {
+			try {
+				samples.append(Files.readString(Paths.get(sampleFileName), options.charset()));
+			} catch (IOException e) {
+				throw new CompressionException("cannot open file %s".formatted(sampleFileName), e);
+			}
+			if (samples.length() >= options.blockSize()) {
+				collectTokens(samples, dictionary, tokenSelector);
+			}
+		}
+		collectTokens(samples, dictionary, tokenSelector);
+		List<String> tokens = new ArrayList<>(savedSpace.keySet());
+		tokens.sort((first, second) -> Long.compare(savedSpace.get(second), savedSpace.get(first)));
+		return new SharedDictionary(tokens.subList(0, Math.min(tokens.size(), maxTokenCount)));
+	}
+
+	private void collectTokens(StringBuilder samples, Dictionary dictionary, TokenSelector tokenSelector) {
+		try (StringReader reader = new StringReader(samples.toString())) {
+			while (dictionary.initialize(reader)) {
+				dictionary.growLargerTokens();
+				Stash stash = new Stash();
+				tokenSelector.formSetOfTokensAndChain(dictionary, stash);
+				for (var entry : stash) {
+					savedSpace.merge(entry.getKey(), (long) entry.getKey().length() * entry.getValue().length,
+							Long::sum);
+				}
+			}
+		} catch (IOException e) {
+			throw new CompressionException("cannot read samples", e);
+		}
+		samples.setLength(0);
+	}
+
+}
@@ -0,0 +1,157 @@
+package luxoft.ch.compression.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.IntList;
+import luxoft.ch.compression.model.Stash;
+
+/**
+ * Single pass selection that needs no token discovery. A Rabin-Karp hash of
+ * the next {@value #MIN_TOKEN_LENGTH} chars finds earlier positions in a
+ * hash-chain table; the longest match among the last {@value #MAX_CHAIN_LENGTH}
+ * of them becomes a token with entries at both positions. A match at an entry
+ * of a token chosen before reuses that token, so recurring text keeps
+ * referring to one table entry. Long runs without matches are scanned with
+ * growing steps, so incompressible data costs little.
+ */
+public class FastTokenSelector implements TokenSelector {
+
+	private static final int MIN_TOKEN_LENGTH = GreedyTokenSelector.MIN_TOKEN_LENGTH;
+	private static final int HASH_BITS = 16;
+	private static final int HASH_BASE = 31;
+	private static final int HASH_MULTIPLIER = 0x9E3779B1;
+	private static final int MAX_CHAIN_LENGTH = 2;
+	private static final int SKIP_SHIFT = 6;
+
+	private final int minTokenEntryCount;
+
+	public FastTokenSelector(int minTokenEntryCount) {
+		this.minTokenEntryCount = minTokenEntryCount;
+	}
+
+	public int getMinTokenEntryCount() {
+		return minTokenEntryCount;
+	}
+
+	@Override
+	public void formSetOfTokensAndChain(Dictionary dictionary, Stash stash) {
+		final int length = dictionary.getCharCount();
+		if (length < MIN_TOKEN_LENGTH) {
+			return;
+		}
+		final char[] buffer = dictionary.getChars(0, length);
+		int[] heads = new int[1 << HASH_BITS];
+		Arrays.fill(heads, -1);
+		int[] previous = new int[length];
+		int[] entryTokenIds = new int[length];
+		BitSet covered = new BitSet(length);
+		for (var range : stash.getRanges()) {
+			covered.set(range.start(), range.end() + 1);
+		}
+		List<String> tokens = new ArrayList<>();
+		List<IntList> tokenEntries = new ArrayList<>();
+		int highPower = 1;
+		for (int index = 1; index < MIN_TOKEN_LENGTH; index++) {
+			highPower *= HASH_BASE;
+		}
+		int hash = hash(buffer, 0);
+		int missCount = 0;
+		for (int position = 0; position + MIN_TOKEN_LENGTH <= length;) {
+			final int bucket = (hash * HASH_MULTIPLIER) >>> (Integer.SIZE - HASH_BITS);
+			int bestCandidate = -1;
+			int bestLength = MIN_TOKEN_LENGTH - 1;
+			for (int candidate = heads[bucket], chain = 0; candidate >= 0
+					&& chain < MAX_CHAIN_LENGTH; candidate = previous[candidate], chain++) {
+				if (position + bestLength >= length
+						|| buffer[candidate + bestLength] != buffer[position + bestLength]) {
+					continue;
+				}
+				final int matchLength = matchLength(buffer, candidate, position, covered, entryTokenIds, tokens);
+				if (matchLength > bestLength) {
+					bestCandidate = candidate;
+					bestLength = matchLength;
+				}
+			}
+			previous[position] = heads[bucket];
+			heads[bucket] = position;
+			if (bestCandidate < 0) {
+				final int step = 1 + (missCount++ >>> SKIP_SHIFT);
+				if (step == 1 && position + MIN_TOKEN_LENGTH < length) {
+					hash = (hash - buffer[position] * highPower) * HASH_BASE + buffer[position + MIN_TOKEN_LENGTH];
+				} else if (position + step + MIN_TOKEN_LENGTH <= length) {
+					hash = hash(buffer, position + step);
+				}
+				position += step;
+				continue;
+			}
+			missCount = 0;
+			int tokenId = entryTokenIds[bestCandidate] - 1;
+			if (tokenId < 0) {
+				tokenId = tokens.size();
+				tokens.add(new String(buffer, bestCandidate, bestLength));
+				IntList entries = new IntList(2);
+				entries.add(bestCandidate);
+				tokenEntries.add(entries);
+				covered.set(bestCandidate, bestCandidate + bestLength);
+				entryTokenIds[bestCandidate] = tokenId + 1;
+			}
+			tokenEntries.get(tokenId).add(position);
+			covered.set(position, position + bestLength);
+			entryTokenIds[position] = tokenId + 1;
+			position += bestLength;
+			if (position + MIN_TOKEN_LENGTH <= length) {
+				hash = hash(buffer, position);
+			}
+		}
+		for (int tokenId = 0; tokenId < tokens.size(); tokenId++) {
+			if (tokenEntries.get(tokenId).size() >= getMinTokenEntryCount()) {
+				stash.add(tokens.get(tokenId), tokenEntries.get(tokenId).toArray());
+			}
+		}
+	}
+
+	private static int hash(char[] buffer, int start) {
+		int hash = 0;
+		for (int index = start; index < start + MIN_TOKEN_LENGTH; index++) {
+			hash = hash * HASH_BASE + buffer[index];
+		}
+		return hash;
+	}
+
+	/**
+	 * Length of the entry a candidate allows at the position: the whole token
+	 * when the candidate starts an entry, otherwise the common chars up to the
+	 * position.
+	 */
+	private static int matchLength(char[] buffer, int candidate, int position, BitSet covered, int[] entryTokenIds,
+			List<String> tokens) {
+		final int tokenId = entryTokenIds[candidate] - 1;
+		if (tokenId >= 0) {
+			final int tokenLength = tokens.get(tokenId).length();
+			return commonLength(buffer, candidate, position, tokenLength, covered, false) == tokenLength
+					? tokenLength
+					: 0;
+		}
+		return commonLength(buffer, candidate, position, position - candidate, covered, true);
+	}
+
+	/**
+	 * Common chars at both positions as long as the chars at the position, and
+	 * at the candidate unless it starts a token entry, are not covered.
+	 */
+	private static int commonLength(char[] buffer, int candidate, int position, int maxLength, BitSet covered,
+			boolean freeCandidate) {
+		final int limit = Math.min(maxLength, buffer.length - position);
+		int common = 0;
+		while (common < limit && buffer[candidate + common] == buffer[position + common]
+				&& !covered.get(position + common) && !(freeCandidate && covered.get(candidate + common))) {
+			common++;
+		}
+		return common;
+	}
+
+}
@@ -0,0 +1,45 @@
+package luxoft.ch.compression.tool;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.IntList;
+import luxoft.ch.compression.model.Stash;
+import luxoft.ch.compression.model.TokenTable;
+
+public class GreedyTokenSelector implements TokenSelector {
+
+	public static final int MIN_TOKEN_LENGTH = 10;
+	private static final int MIN_NUMBER_OF_TOKEN_INDICES = 50;
+
+	private final int minTokenEntryCount;
+
+	public GreedyTokenSelector(int minTokenEntryCount) {
+		this.minTokenEntryCount = minTokenEntryCount;
+	}
+
+	public int getMinTokenEntryCount() {
+		return minTokenEntryCount;
+	}
+
+	@Override
+	public void formSetOfTokensAndChain(Dictionary dictionary, Stash stash) {
+		final TokenTable tokens = dictionary.getTokenTable();
+		var indices = new IntList(MIN_NUMBER_OF_TOKEN_INDICES);
+		for (var tokenId : dictionary.getTokenIdsByTotalSpaceReversed(MIN_TOKEN_LENGTH)) {
+			final int tokenLength = tokens.getLength(tokenId);
+			int lastEndPosition = -1;
+			indices.clear();
+			for (int index = 0; index < tokens.getEntryCount(tokenId); index++) {
+				final int startPosition = tokens.getEntry(tokenId, index);
+				final int endPosition = startPosition + tokenLength - 1;
+				if (startPosition > lastEndPosition && stash.isTokenEntryMayBeApplied(startPosition, endPosition)) {
+					indices.add(startPosition);
+					lastEndPosition = endPosition;
+				}
+			}
+			if (indices.size() >= getMinTokenEntryCount()) {
+				stash.add(tokens.getToken(tokenId), indices.toArray());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+package luxoft.ch.compression.tool;
+
+import java.util.Arrays;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.IntList;
+import luxoft.ch.compression.model.Stash;
+import luxoft.ch.compression.model.TokenTable;
+
+/**
+ * Chooses token entries with a shortest-path parse over the block: every
+ * position either emits its char or jumps over one token entry starting there.
+ * Costs approximate the encoded block size in 1/{@value #SCALE} bytes. A
+ * token's table cost is spread over its expected uses until a pass shows it is
+ * used often enough to stay in the table; entries the parse leaves unused are
+ * then filled greedily.
+ */
+public class OptimalTokenSelector implements TokenSelector {
+
+	private static final int SCALE = 256;
+	private static final int MAX_PASSES = 4;
+	private static final int GAP_LENGTH_COST = 1;
+
+	private final int minTokenEntryCount;
+
+	public OptimalTokenSelector(int minTokenEntryCount) {
+		this.minTokenEntryCount = minTokenEntryCount;
+	}
+
+	public int getMinTokenEntryCount() {
+		return minTokenEntryCount;
+	}
+
+	@Override
+	public void formSetOfTokensAndChain(Dictionary dictionary, Stash stash) {
+		final TokenTable tokens = dictionary.getTokenTable();
+		final CharSequence buffer = tokens.getBuffer();
+		final int length = dictionary.getCharCount();
+
+		int[] candidateIds = dictionary.getTokenIdsByTotalSpaceReversed(GreedyTokenSelector.MIN_TOKEN_LENGTH);
+		IntList starts = new IntList();
+		IntList ranks = new IntList();
+		for (int rank = 0; rank < candidateIds.length; rank++) {
+			final int tokenId = candidateIds[rank];
+			final int tokenLength = tokens.getLength(tokenId);
+			for (int index = 0; index < tokens.getEntryCount(tokenId); index++) {
+				final int start = tokens.getEntry(tokenId, index);
+				if (stash.isTokenEntryMayBeApplied(start, start + tokenLength - 1)) {
+					starts.add(start);
+					ranks.add(rank);
+				}
+			}
+		}
+		int[] firstCandidate = new int[length + 1];
+		for (int index = 0; index < starts.size(); index++) {
+			firstCandidate[starts.get(index)]++;
+		}
+		for (int position = 0, sum = 0; position <= length; position++) {
+			final int count = firstCandidate[position];
+			firstCandidate[position] = sum;
+			sum += count;
+		}
+		int[] candidates = new int[starts.size()];
+		int[] fill = firstCandidate.clone();
+		for (int index = 0; index < starts.size(); index++) {
+			candidates[fill[starts.get(index)]++] = ranks.get(index);
+		}
+
+		long[] charCosts = new long[length + 1];
+		for (int position = length - 1; position >= 0; position--) {
+			charCosts[position] = charCosts[position + 1] + SCALE * encodedLength(buffer.charAt(position));
+		}
+		int[] useCounts = new int[candidateIds.length];
+		for (int rank = 0; rank < candidateIds.length; rank++) {
+			useCounts[rank] = tokens.getEntryCount(candidateIds[rank]);
+		}
+		boolean[] enabled = new boolean[candidateIds.length];
+		Arrays.fill(enabled, true);
+		long[] referenceCosts = new long[candidateIds.length];
+		long[] costs = new long[length + 1];
+		int[] choices = new int[length + 1];
+
+		for (int pass = 0; pass < MAX_PASSES; pass++) {
+			for (int rank = 0; rank < candidateIds.length; rank++) {
+				final int tokenId = candidateIds[rank];
+				final long tableCost = charCosts[tokens.getOffset(tokenId)]
+						- charCosts[tokens.getOffset(tokenId) + tokens.getLength(tokenId)]
+						+ SCALE * varIntLength(tokens.getLength(tokenId));
+				referenceCosts[rank] = SCALE * (varIntLength(rank) + GAP_LENGTH_COST);
+				if (pass == 0 || useCounts[rank] < minTokenEntryCount) {
+					referenceCosts[rank] += tableCost / Math.max(useCounts[rank], minTokenEntryCount);
+				}
+			}
+			parse(tokens, candidateIds, firstCandidate, candidates, enabled, referenceCosts, charCosts, costs,
+					choices);
+			Arrays.fill(useCounts, 0);
+			for (int position = 0; position < length;) {
+				final int rank = choices[position];
+				if (rank < 0) {
+					position++;
+				} else {
+					useCounts[rank]++;
+					position += tokens.getLength(candidateIds[rank]);
+				}
+			}
+			boolean changed = false;
+			for (int rank = 0; rank < candidateIds.length; rank++) {
+				if (enabled[rank] && useCounts[rank] < minTokenEntryCount) {
+					enabled[rank] = false;
+					changed = true;
+				}
+			}
+			if (!changed && pass > 0) {
+				break;
+			}
+		}
+
+		IntList[] entries = new IntList[candidateIds.length];
+		for (int position = 0; position < length;) {
+			final int rank = choices[position];
+			if (rank < 0) {
+				position++;
+			} else {
+				if (entries[rank] == null) {
+					entries[rank] = new IntList(useCounts[rank]);
+				}
+				entries[rank].add(position);
+				position += tokens.getLength(candidateIds[rank]);
+			}
+		}
+		boolean[] selected = new boolean[candidateIds.length];
+		for (int rank = 0; rank < candidateIds.length; rank++) {
+			if (entries[rank] != null && entries[rank].size() >= getMinTokenEntryCount()) {
+				stash.add(tokens.getToken(candidateIds[rank]), entries[rank].toArray());
+				selected[rank] = true;
+			}
+		}
+		fillGaps(tokens, candidateIds, selected, stash);
+	}
+
+	private void fillGaps(TokenTable tokens, int[] candidateIds, boolean[] selected, Stash stash) {
+		var indices = new IntList(getMinTokenEntryCount());
+		for (int rank = 0; rank < candidateIds.length; rank++) {
+			if (selected[rank]) {
+				continue;
+			}
+			final int tokenId = candidateIds[rank];
+			final int tokenLength = tokens.getLength(tokenId);
+			int lastEndPosition = -1;
+			indices.clear();
+			for (int index = 0; index < tokens.getEntryCount(tokenId); index++) {
+				final int startPosition = tokens.getEntry(tokenId, index);
+				final int endPosition = startPosition + tokenLength - 1;
+				if (startPosition > lastEndPosition && stash.isTokenEntryMayBeApplied(startPosition, endPosition)) {
+					indices.add(startPosition);
+					lastEndPosition = endPosition;
+				}
+			}
+			if (indices.size() >= getMinTokenEntryCount()) {
+				stash.add(tokens.getToken(tokenId), indices.toArray());
+			}
+		}
+	}
+
+	private static void parse(TokenTable tokens, int[] candidateIds, int[] firstCandidate, int[] candidates,
+			boolean[] enabled, long[] referenceCosts, long[] charCosts, long[] costs, int[] choices) {
+		final int length = costs.length - 1;
+		costs[length] = 0;
+		choices[length] = -1;
+		for (int position = length - 1; position >= 0; position--) {
+			long best = costs[position + 1] + charCosts[position] - charCosts[position + 1];
+			int choice = -1;
+			for (int index = firstCandidate[position]; index < firstCandidate[position + 1]; index++) {
+				final int rank = candidates[index];
+				if (enabled[rank]) {
+					final long cost = costs[position + tokens.getLength(candidateIds[rank])] + referenceCosts[rank];
+					if (cost < best) {
+						best = cost;
+						choice = rank;
+					}
+				}
+			}
+			costs[position] = best;
+			choices[position] = choice;
+		}
+	}
+
+	private static int encodedLength(char ch) {
+		if (ch < 0x80) {
+			return 1;
+		}
+		return ch < 0x800 ? 2 : 3;
+	}
+
+	private static int varIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+}
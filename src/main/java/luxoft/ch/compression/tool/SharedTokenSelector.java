@@ -0,0 +1,42 @@
+package luxoft.ch.compression.tool;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.IntList;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.model.Stash;
+
+public class SharedTokenSelector implements TokenSelector {
+
+	private final SharedDictionary sharedDictionary;
+	private final TokenSelector blockSelector;
+
+	public SharedTokenSelector(SharedDictionary sharedDictionary, TokenSelector blockSelector) {
+		this.sharedDictionary = sharedDictionary;
+		this.blockSelector = blockSelector;
+	}
+
+	@Override
+	public void formSetOfTokensAndChain(Dictionary dictionary, Stash stash) {
+		final CharSequence buffer = dictionary.getTokenTable().getBuffer();
+		IntList[] entries = new IntList[sharedDictionary.size()];
+		for (int position = 0; position < dictionary.getCharCount();) {
+			final int tokenId = sharedDictionary.match(buffer, position);
+			if (tokenId < 0) {
+				position++;
+				continue;
+			}
+			if (entries[tokenId] == null) {
+				entries[tokenId] = new IntList(1);
+			}
+			entries[tokenId].add(position);
+			position += sharedDictionary.getToken(tokenId).length();
+		}
+		for (int tokenId = 0; tokenId < entries.length; tokenId++) {
+			if (entries[tokenId] != null) {
+				stash.add(sharedDictionary.getToken(tokenId), entries[tokenId].toArray());
+			}
+		}
+		blockSelector.formSetOfTokensAndChain(dictionary, stash);
+	}
+
+}
@@ -0,0 +1,72 @@
+package luxoft.ch.compression.tool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+final class TextEncoder {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final WritableByteChannel channel;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private final ByteBuffer bytes;
+	private long byteCount;
+
+	TextEncoder(WritableByteChannel channel, Charset charset) {
+		this.channel = channel;
+		encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars = CharBuffer.allocate(BUFFER_SIZE);
+		bytes = ByteBuffer.allocate((int) Math.ceil(BUFFER_SIZE * encoder.maxBytesPerChar()));
+	}
+
+	void write(char[] data) throws IOException {
+		for (int offset = 0; offset < data.length;) {
+			final int count = Math.min(chars.remaining(), data.length - offset);
+			chars.put(data, offset, count);
+			offset += count;
+			encode(false);
+		}
+	}
+
+	void write(String data) throws IOException {
+		for (int offset = 0; offset < data.length();) {
+			final int count = Math.min(chars.remaining(), data.length() - offset);
+			data.getChars(offset, offset + count, chars.array(), chars.arrayOffset() + chars.position());
+			chars.position(chars.position() + count);
+			offset += count;
+			encode(false);
+		}
+	}
+
+	long finish() throws IOException {
+		encode(true);
+		encoder.flush(bytes);
+		drain();
+		return byteCount;
+	}
+
+	private void encode(boolean endOfInput) throws IOException {
+		chars.flip();
+		while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+			drain();
+		}
+		chars.compact();
+		drain();
+	}
+
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			byteCount += channel.write(bytes);
+		}
+		bytes.clear();
+	}
+
+}
@@ -0,0 +1,167 @@
+package luxoft.ch.compression.tool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import luxoft.ch.compression.model.Stash;
+
+/**
+ * Knuth-Morris-Pratt search over compressed blocks. Every token of a block is
+ * scanned once for its inner matches, newlines and final automaton state, so
+ * a reference costs at most {@code pattern.length() - 1} steps for the matches
+ * that cross its start, however long the token is.
+ */
+final class TextSearch {
+
+	private record TokenScan(int[] matchStarts, int[] newlines, int endState) {
+	}
+
+	private final String pattern;
+	private final int[] failure;
+	private final boolean lines;
+	private final Map<String, TokenScan> tokenScans;
+	private final List<Long> matches;
+	private final List<long[]> lineRanges;
+	private int state;
+	private long offset;
+	private long lineStart;
+	private boolean lineMatched;
+
+	TextSearch(String pattern, boolean lines) {
+		if (pattern.isEmpty())
+			throw new IllegalArgumentException("search pattern shouldn't be empty");
+		if (lines && pattern.indexOf('\n') >= 0)
+			throw new IllegalArgumentException("line search pattern shouldn't span lines");
+		this.pattern = pattern;
+		this.lines = lines;
+		failure = new int[pattern.length()];
+		for (int index = 1, prefix = 0; index < pattern.length(); index++) {
+			while (prefix > 0 && pattern.charAt(index) != pattern.charAt(prefix)) {
+				prefix = failure[prefix - 1];
+			}
+			if (pattern.charAt(index) == pattern.charAt(prefix)) {
+				prefix++;
+			}
+			failure[index] = prefix;
+		}
+		tokenScans = new HashMap<>();
+		matches = new ArrayList<>();
+		lineRanges = new ArrayList<>();
+	}
+
+	List<Long> getMatches() {
+		return matches;
+	}
+
+	List<long[]> getLineRanges() {
+		return lineRanges;
+	}
+
+	long getLineStart() {
+		return lineStart;
+	}
+
+	void scan(Stash block) {
+		tokenScans.clear();
+		var tokenIter = block.getReferencedTokensIterator();
+		for (var rangeIter = block.getUncompressedRangesIterator(); rangeIter.hasNext();) {
+			for (var ch : rangeIter.next()) {
+				step(ch);
+			}
+			if (rangeIter.hasNext()) {
+				scan(tokenIter.next());
+			}
+		}
+	}
+
+	private void scan(String token) {
+		final int prefixLength = pattern.length() - 1;
+		if (token.length() <= prefixLength) {
+			for (int index = 0; index < token.length(); index++) {
+				step(token.charAt(index));
+			}
+			return;
+		}
+		final long tokenOffset = offset;
+		for (int index = 0; index < prefixLength; index++) {
+			step(token.charAt(index));
+		}
+		final TokenScan tokenScan = tokenScans.computeIfAbsent(token, this::scanToken);
+		int newline = 0;
+		for (var matchStart : tokenScan.matchStarts()) {
+			for (; newline < tokenScan.newlines().length && tokenScan.newlines()[newline] < matchStart; newline++) {
+				endLine(tokenOffset + tokenScan.newlines()[newline]);
+			}
+			match(tokenOffset + matchStart);
+		}
+		for (; newline < tokenScan.newlines().length; newline++) {
+			endLine(tokenOffset + tokenScan.newlines()[newline]);
+		}
+		state = tokenScan.endState();
+		offset = tokenOffset + token.length();
+	}
+
+	/**
+	 * Inner matches and the newlines after the first {@code pattern.length() - 1}
+	 * chars, which are always fed char by char.
+	 */
+	private TokenScan scanToken(String token) {
+		List<Integer> matchStarts = new ArrayList<>();
+		List<Integer> newlines = new ArrayList<>();
+		int tokenState = 0;
+		for (int index = 0; index < token.length(); index++) {
+			final char ch = token.charAt(index);
+			tokenState = next(tokenState, ch);
+			if (tokenState == pattern.length()) {
+				matchStarts.add(index - pattern.length() + 1);
+				tokenState = failure[tokenState - 1];
+			}
+			if (lines && ch == '\n' && index >= pattern.length() - 1) {
+				newlines.add(index);
+			}
+		}
+		return new TokenScan(matchStarts.stream().mapToInt(Integer::intValue).toArray(),
+				newlines.stream().mapToInt(Integer::intValue).toArray(), tokenState);
+	}
+
+	private int next(int currentState, char ch) {
+		while (currentState > 0 && ch != pattern.charAt(currentState)) {
+			currentState = failure[currentState - 1];
+		}
+		return ch == pattern.charAt(currentState) ? currentState + 1 : 0;
+	}
+
+	private void step(char ch) {
+		state = next(state, ch);
+		if (state == pattern.length()) {
+			match(offset - pattern.length() + 1);
+			state = failure[state - 1];
+		}
+		if (lines && ch == '\n') {
+			endLine(offset);
+		}
+		offset++;
+	}
+
+	private void match(long matchOffset) {
+		matches.add(matchOffset);
+		lineMatched = true;
+	}
+
+	private void endLine(long newlineOffset) {
+		if (lineMatched) {
+			lineRanges.add(new long[] { lineStart, newlineOffset });
+			lineMatched = false;
+		}
+		lineStart = newlineOffset + 1;
+	}
+
+	void finish() {
+		if (lines) {
+			endLine(offset);
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package luxoft.ch.compression.tool;
+
+import luxoft.ch.compression.model.Dictionary;
+import luxoft.ch.compression.model.Stash;
+
+public interface TokenSelector {
+
+	void formSetOfTokensAndChain(Dictionary dictionary, Stash stash);
+
+}
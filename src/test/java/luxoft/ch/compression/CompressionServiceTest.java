@@ -0,0 +1,88 @@
+package luxoft.ch.compression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import luxoft.ch.compression.tool.CompressionOptions;
+import luxoft.ch.compression.tool.CompressionService;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+
+class CompressionServiceTest {
+
+	@TempDir
+	Path directory;
+
+	private String decompress(byte[] compressed) throws IOException {
+		final Path file = Files.createTempFile(directory, "compressed", ".data");
+		Files.write(file, compressed);
+		StringWriter writer = new StringWriter();
+		try (var reader = new Decompressor(file.toString()).openReader()) {
+			reader.transferTo(writer);
+		}
+		return writer.toString();
+	}
+
+	private static String document(int index) {
+		StringBuilder builder = new StringBuilder();
+		for (int line = 0; line < 50; line++) {
+			builder.append("document %d, line %d: the same words are repeated again\n".formatted(index, line % 5));
+		}
+		return builder.toString();
+	}
+
+	@Test
+	void testReusedCompressor() throws IOException {
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(4096);
+		final byte[] first = Files.readAllBytes(Paths.get("In a grove.txt"));
+		final byte[] second = document(1).getBytes(StandardCharsets.UTF_8);
+		Compressor compressor = new Compressor(options);
+		compressor.compress(first);
+		assertArrayEquals(new Compressor(options).compress(second), compressor.compress(second));
+		assertEquals(document(1), decompress(compressor.compress(second)));
+	}
+
+	@Test
+	void testInMemoryBlocks() throws IOException {
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(4096);
+		final Path compressed = directory.resolve("file.data");
+		new Compressor("real-sample.txt", options).compress(compressed.toString());
+		final byte[] source = Files.readAllBytes(Paths.get("real-sample.txt"));
+		assertArrayEquals(Files.readAllBytes(compressed), new Compressor(options).compress(source));
+
+		final byte[] malformed = Arrays.copyOf(source, source.length + 2);
+		malformed[source.length] = (byte) 0xC3;
+		malformed[source.length + 1] = 0x28;
+		assertThrows(CompressionException.class, () -> new Compressor(options).compress(malformed));
+	}
+
+	@Test
+	void testConcurrentRequests() throws IOException {
+		try (CompressionService service = new CompressionService(CompressionOptions.DEFAULT.withBlockSize(8192), 4)) {
+			List<CompletableFuture<byte[]>> results = new ArrayList<>();
+			for (int index = 0; index < 200; index++) {
+				results.add(service.submit(document(index).getBytes(StandardCharsets.UTF_8)));
+			}
+			for (int index = 0; index < results.size(); index++) {
+				assertEquals(document(index), decompress(results.get(index).join()));
+			}
+			assertEquals(document(7),
+					decompress(service.compress(ByteBuffer.wrap(document(7).getBytes(StandardCharsets.UTF_8)))));
+		}
+	}
+
+}
@@ -2,14 +2,30 @@ package luxoft.ch.compression;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.tool.CompressionLevel;
+import luxoft.ch.compression.tool.CompressionMetrics;
+import luxoft.ch.compression.tool.CompressionOptions;
 import luxoft.ch.compression.tool.Compressor;
 import luxoft.ch.compression.tool.Decompressor;
+import luxoft.ch.compression.tool.DictionaryTrainer;
 
 class CompressorTest {
 
@@ -47,4 +63,268 @@ class CompressorTest {
 		assertArrayEquals(input, decompressed);
 	}
 
+	@Test
+	void testStreamingBlocks(@TempDir Path directory) throws IOException {
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		Compressor compressor = new Compressor("In a grove.txt", CompressionOptions.DEFAULT.withBlockSize(4096));
+		compressor.compress(compressed);
+		assertEquals(Files.readString(Paths.get("In a grove.txt")).length(), compressor.getStatistics().entrySize()
+				+ compressor.getStatistics().uncompressedSize());
+		Decompressor decompressor = new Decompressor(compressed);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("In a grove.txt")), Files.readAllBytes(Paths.get(decompressed)));
+	}
+
+	@Test
+	void testParallelBlocks(@TempDir Path directory) throws IOException {
+		final String serial = directory.resolve("serial.data").toString();
+		final String parallel = directory.resolve("parallel.data").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(8192);
+		new Compressor("real-sample.txt", options).compress(serial);
+		new Compressor("real-sample.txt", options.withThreads(4)).compress(parallel);
+		assertArrayEquals(Files.readAllBytes(Paths.get(serial)), Files.readAllBytes(Paths.get(parallel)));
+	}
+
+	@Test
+	void testMemoryMapped(@TempDir Path directory) throws IOException {
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		new Compressor("In a grove.txt", CompressionOptions.DEFAULT.withBlockSize(4096).withMemoryMapped(true))
+				.compress(compressed);
+		Decompressor decompressor = new Decompressor(compressed);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("In a grove.txt")), Files.readAllBytes(Paths.get(decompressed)));
+	}
+
+	@Test
+	void testOptimalLevel(@TempDir Path directory) throws IOException {
+		final String greedy = directory.resolve("greedy.data").toString();
+		final String optimal = directory.resolve("optimal.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(8192);
+		new Compressor("real-sample.txt", options).compress(greedy);
+		new Compressor("real-sample.txt", options.withLevel(CompressionLevel.OPTIMAL)).compress(optimal);
+		Decompressor decompressor = new Decompressor(optimal);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("real-sample.txt")), Files.readAllBytes(Paths.get(decompressed)));
+		assertTrue(Files.size(Paths.get(optimal)) <= Files.size(Paths.get(greedy)));
+	}
+
+	@Test
+	void testOptimalLevelSharedDictionary(@TempDir Path directory) throws IOException {
+		final String text = Files.readString(Paths.get("real-sample.txt"), StandardCharsets.UTF_8);
+		List<String> samples = new ArrayList<>();
+		for (int start = 0; start < text.length() / 2; start += 2000) {
+			final Path sample = directory.resolve("sample" + start + ".txt");
+			Files.writeString(sample, text.substring(start, Math.min(start + 2000, text.length() / 2)),
+					StandardCharsets.UTF_8);
+			samples.add(sample.toString());
+		}
+		final SharedDictionary dictionary = new DictionaryTrainer().train(samples);
+		final Path source = directory.resolve("source.txt");
+		Files.writeString(source, text.substring(text.length() / 2), StandardCharsets.UTF_8);
+		final String compressed = directory.resolve("optimal.data").toString();
+		for (var level : CompressionLevel.values()) {
+			new Compressor(source.toString(), CompressionOptions.DEFAULT.withDictionary(dictionary).withLevel(level))
+					.compress(compressed);
+			Decompressor decompressor = new Decompressor(compressed, dictionary);
+			assertEquals(text.substring(text.length() / 2), decompressor.read(0, text.length()), level.name());
+		}
+	}
+
+	@Test
+	void testFastLevel(@TempDir Path directory) throws IOException {
+		final String fast = directory.resolve("fast.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		for (var source : new String[] { "real-sample.txt", "In a grove.txt" }) {
+			for (var threads : new int[] { 1, 2 }) {
+				final var options = CompressionOptions.DEFAULT.withBlockSize(8192).withThreads(threads)
+						.withLevel(CompressionLevel.FAST).withHierarchicalTokens(threads > 1);
+				new Compressor(source, options).compress(fast);
+				assertTrue(Files.size(Paths.get(fast)) < Files.size(Paths.get(source)));
+				Decompressor decompressor = new Decompressor(fast);
+				decompressor.decompress();
+				decompressor.save(decompressed);
+				assertArrayEquals(Files.readAllBytes(Paths.get(source)), Files.readAllBytes(Paths.get(decompressed)));
+			}
+		}
+	}
+
+	@Test
+	void testMetrics(@TempDir Path directory) throws IOException {
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		final Path recording = directory.resolve("recording.jfr");
+		Compressor compressor = new Compressor("real-sample.txt", CompressionOptions.DEFAULT.withBlockSize(16384));
+		Decompressor decompressor = new Decompressor(compressed);
+		try (Recording events = new Recording()) {
+			events.enable("luxoft.compression.BlockCompression");
+			events.enable("luxoft.compression.BlockDecompression");
+			events.start();
+			compressor.compress(compressed);
+			decompressor.decompress();
+			decompressor.save(decompressed);
+			events.stop();
+			events.dump(recording);
+		}
+		CompressionMetrics metrics = compressor.getMetrics();
+		assertEquals(Files.readString(Paths.get("real-sample.txt")).length(), metrics.charCount());
+		assertEquals(Files.size(Paths.get("real-sample.txt")), metrics.bytesIn());
+		assertEquals(Files.size(Paths.get(compressed)), metrics.bytesOut());
+		assertTrue(metrics.candidateTokenCount() > 0);
+		assertTrue(metrics.overlapRejectionCount() <= metrics.overlapCheckCount());
+		assertEquals(metrics.blockCount(), decompressor.getMetrics().blockCount());
+		assertEquals(metrics.charCount(), decompressor.getMetrics().charCount());
+		assertEquals(metrics.bytesIn(), decompressor.getMetrics().bytesOut());
+
+		var events = RecordingFile.readAllEvents(recording);
+		assertEquals(metrics.blockCount(),
+				events.stream().filter(event -> event.getEventType().getName().endsWith(".BlockCompression")).count());
+		assertEquals(metrics.blockCount(),
+				events.stream().filter(event -> event.getEventType().getName().endsWith(".BlockDecompression")).count());
+	}
+
+	@Test
+	void testAppend(@TempDir Path directory) throws IOException {
+		final String text = Files.readString(Paths.get("real-sample.txt"));
+		final String compressed = directory.resolve("compressed.data").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(8192);
+		final int[] bounds = { 0, 5000, 5100, 40000, text.length() };
+		for (int part = 0; part + 1 < bounds.length; part++) {
+			final Path source = directory.resolve("part" + part + ".txt");
+			Files.writeString(source, text.substring(bounds[part], bounds[part + 1]));
+			Compressor compressor = new Compressor(source.toString(), options);
+			if (part == 0) {
+				compressor.compress(compressed);
+			} else {
+				compressor.append(compressed);
+			}
+		}
+		Decompressor decompressor = new Decompressor(compressed);
+		assertEquals(text.length(), decompressor.getCharCount());
+		assertEquals(1 + (text.length() - 5000 + 8191) / 8192, decompressor.verify());
+		assertEquals(text, decompressor.read(0, text.length()));
+	}
+
+	@Test
+	void testSmallAppend(@TempDir Path directory) throws IOException {
+		final String text = Files.readString(Paths.get("real-sample.txt"));
+		final Path source = directory.resolve("source.txt");
+		final Path compressed = directory.resolve("compressed.data");
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(8192);
+		Files.writeString(source, text.substring(0, 5000));
+		new Compressor(source.toString(), options).compress(compressed.toString());
+		final byte[] original = Files.readAllBytes(compressed);
+		final int indexSize = 1 + Integer.BYTES + (Long.BYTES + Integer.BYTES) + Long.BYTES + Integer.BYTES;
+		Files.writeString(source, text.substring(5000, 5100));
+		new Compressor(source.toString(), options).append(compressed.toString());
+		final byte[] appended = Files.readAllBytes(compressed);
+		assertArrayEquals(Arrays.copyOf(original, original.length - indexSize),
+				Arrays.copyOf(appended, original.length - indexSize));
+		Decompressor decompressor = new Decompressor(compressed.toString());
+		assertEquals(2, decompressor.verify());
+		assertEquals(text.substring(0, 5100), decompressor.read(0, 5100));
+	}
+
+	@Test
+	void testFailedAppend(@TempDir Path directory) throws IOException {
+		final String text = Files.readString(Paths.get("real-sample.txt"));
+		final Path source = directory.resolve("source.txt");
+		final Path malformed = directory.resolve("malformed.txt");
+		final Path compressed = directory.resolve("compressed.data");
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(8192);
+		Files.writeString(source, text.substring(0, 5000));
+		new Compressor(source.toString(), options).compress(compressed.toString());
+		final byte[] original = Files.readAllBytes(compressed);
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(text.substring(5000, 30000).getBytes(StandardCharsets.UTF_8));
+		data.write(new byte[] { (byte) 0xC3, (byte) 0x28 });
+		Files.write(malformed, data.toByteArray());
+		assertThrows(CompressionException.class,
+				() -> new Compressor(malformed.toString(), options).append(compressed.toString()));
+		assertArrayEquals(original, Files.readAllBytes(compressed));
+		Decompressor decompressor = new Decompressor(compressed.toString());
+		assertEquals(1, decompressor.verify());
+		assertEquals(text.substring(0, 5000), decompressor.read(0, 5000));
+	}
+
+	@Test
+	void testByteLevel(@TempDir Path directory) throws IOException {
+		final Path source = directory.resolve("source.bin");
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.bin").toString();
+		byte[] data = new byte[50000];
+		Random random = new Random(3);
+		for (int index = 0; index < data.length; index++) {
+			data[index] = (byte) (index % 1000 < 500 ? random.nextInt(256) : data[index - 500]);
+		}
+		Files.write(source, data);
+		new Compressor(source.toString(), CompressionOptions.DEFAULT.withBlockSize(16384).withByteLevel(true))
+				.compress(compressed);
+		assertTrue(Files.size(Paths.get(compressed)) < data.length);
+		Decompressor decompressor = new Decompressor(compressed);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(data, Files.readAllBytes(Paths.get(decompressed)));
+		assertThrows(CompressionException.class, () -> new Compressor(source.toString()).compress(compressed));
+	}
+
+	@Test
+	void testCharset(@TempDir Path directory) throws IOException {
+		final Path source = directory.resolve("source.txt");
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		final String text = "Gr\u00fc\u00dfe aus K\u00f6ln, sch\u00f6ne Stra\u00dfe. ".repeat(200);
+		Files.writeString(source, text, StandardCharsets.ISO_8859_1);
+		new Compressor(source.toString(), CompressionOptions.DEFAULT.withCharset(StandardCharsets.ISO_8859_1))
+				.compress(compressed);
+		Decompressor decompressor = new Decompressor(compressed);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertEquals(text, Files.readString(Paths.get(decompressed), StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	void testEntropyCoded(@TempDir Path directory) throws IOException {
+		final String plain = directory.resolve("plain.data").toString();
+		final String coded = directory.resolve("coded.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(16384);
+		new Compressor("real-sample.txt", options).compress(plain);
+		new Compressor("real-sample.txt", options.withEntropyCoded(true)).compress(coded);
+		assertTrue(Files.size(Paths.get(coded)) < Files.size(Paths.get(plain)));
+		Decompressor decompressor = new Decompressor(coded);
+		assertEquals(decompressor.verify(), new Decompressor(plain).verify());
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("real-sample.txt")), Files.readAllBytes(Paths.get(decompressed)));
+		assertThrows(CompressionException.class, () -> new Compressor("In a grove.txt", options).append(coded));
+	}
+
+	@Test
+	void testHierarchicalTokens(@TempDir Path directory) throws IOException {
+		final String flat = directory.resolve("flat.data").toString();
+		final String hierarchical = directory.resolve("hierarchical.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(16384);
+		new Compressor("real-sample.txt", options).compress(flat);
+		new Compressor("real-sample.txt", options.withHierarchicalTokens(true)).compress(hierarchical);
+		assertTrue(Files.size(Paths.get(hierarchical)) < Files.size(Paths.get(flat)));
+		Decompressor decompressor = new Decompressor(hierarchical);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("real-sample.txt")), Files.readAllBytes(Paths.get(decompressed)));
+
+		new Compressor("real-sample.txt", options.withHierarchicalTokens(true).withEntropyCoded(true).withThreads(2))
+				.compress(hierarchical);
+		decompressor = new Decompressor(hierarchical);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertArrayEquals(Files.readAllBytes(Paths.get("real-sample.txt")), Files.readAllBytes(Paths.get(decompressed)));
+	}
+
 }
@@ -0,0 +1,252 @@
+package luxoft.ch.compression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import luxoft.ch.compression.tool.BlockCache;
+import luxoft.ch.compression.tool.CompressionOptions;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+
+class DecompressorTest {
+
+	private static final int BLOCK_SIZE = 4096;
+
+	@TempDir
+	static Path directory;
+
+	private static String text;
+	private static String compressed;
+
+	@BeforeAll
+	static void compress() throws IOException {
+		text = Files.readString(Paths.get("real-sample.txt"));
+		compressed = directory.resolve("compressed.data").toString();
+		new Compressor("real-sample.txt", CompressionOptions.DEFAULT.withBlockSize(BLOCK_SIZE)).compress(compressed);
+	}
+
+	@Test
+	void testCharCount() {
+		assertEquals(text.length(), new Decompressor(compressed).getCharCount());
+	}
+
+	@Test
+	void testRead() {
+		Decompressor decompressor = new Decompressor(compressed);
+		Random random = new Random(7);
+		for (int round = 0; round < 100; round++) {
+			final int offset = random.nextInt(text.length());
+			final int length = random.nextInt(3 * BLOCK_SIZE);
+			assertEquals(text.substring(offset, Math.min(offset + length, text.length())),
+					decompressor.read(offset, length));
+		}
+	}
+
+	@Test
+	void testReadAfterRewrite() throws IOException {
+		final Path source = directory.resolve("rewritten.txt");
+		final String rewritten = directory.resolve("rewritten.data").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(BLOCK_SIZE);
+		Files.writeString(source, text.substring(0, 10000));
+		new Compressor(source.toString(), options).compress(rewritten);
+		Decompressor decompressor = new Decompressor(rewritten);
+		assertEquals(10000, decompressor.getCharCount());
+		assertEquals(text.substring(5000, 10000), decompressor.read(5000, 20000));
+
+		Files.writeString(source, text.substring(0, 30000));
+		new Compressor(source.toString(), options).compress(rewritten);
+		assertEquals(30000, decompressor.getCharCount());
+		assertEquals(text.substring(5000, 25000), decompressor.read(5000, 20000));
+	}
+
+	@Test
+	void testReadAfterAppend() throws IOException {
+		final Path source = directory.resolve("appended.txt");
+		final String appended = directory.resolve("appended.data").toString();
+		final CompressionOptions options = CompressionOptions.DEFAULT.withBlockSize(BLOCK_SIZE);
+		Files.writeString(source, text.substring(0, 10000));
+		new Compressor(source.toString(), options).compress(appended);
+		Decompressor decompressor = new Decompressor(appended);
+		assertEquals(10000, decompressor.getCharCount());
+		assertEquals(text.substring(5000, 10000), decompressor.read(5000, 20000));
+
+		Files.writeString(source, text.substring(10000, 30000));
+		new Compressor(source.toString(), options).append(appended);
+		assertEquals(30000, decompressor.getCharCount());
+		assertEquals(text.substring(5000, 25000), decompressor.read(5000, 20000));
+	}
+
+	@Test
+	void testReadBounds() {
+		Decompressor decompressor = new Decompressor(compressed);
+		assertEquals("", decompressor.read(0, 0));
+		assertEquals(text, decompressor.read(0, text.length()));
+		assertEquals("", decompressor.read(text.length() + 10L, 10));
+		assertEquals(text.substring(10), decompressor.read(10, Integer.MAX_VALUE - 16));
+		assertEquals("", decompressor.read(text.length() + 10L, Integer.MAX_VALUE));
+		assertThrows(IllegalArgumentException.class, () -> decompressor.read(-1, 10));
+	}
+
+	@Test
+	void testOpenReader() throws IOException {
+		StringWriter result = new StringWriter();
+		try (Reader reader = new Decompressor(compressed).openReader()) {
+			char[] chunk = new char[777];
+			for (int count = reader.read(chunk); count >= 0; count = reader.read(chunk)) {
+				result.write(chunk, 0, count);
+			}
+		}
+		assertEquals(text, result.toString());
+	}
+
+	@Test
+	void testTransferTo() {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		final long byteCount = new Decompressor(compressed).transferTo(Channels.newChannel(result));
+		assertEquals(result.size(), byteCount);
+		assertEquals(text, result.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testSearch() {
+		Decompressor decompressor = new Decompressor(compressed);
+		Random random = new Random(13);
+		List<String> patterns = new ArrayList<>(List.of("the", "e", "  ", "\n", "zzzzzz"));
+		for (int round = 0; round < 20; round++) {
+			final int offset = random.nextInt(text.length() - 200);
+			patterns.add(text.substring(offset, offset + 1 + random.nextInt(200)));
+		}
+		for (var pattern : patterns) {
+			List<Long> expected = new ArrayList<>();
+			for (int index = text.indexOf(pattern); index >= 0; index = text.indexOf(pattern, index + 1)) {
+				expected.add((long) index);
+			}
+			assertEquals(expected, decompressor.search(pattern), pattern);
+		}
+		assertThrows(IllegalArgumentException.class, () -> decompressor.search(""));
+	}
+
+	@Test
+	void testGrep() {
+		Decompressor decompressor = new Decompressor(compressed);
+		for (var pattern : List.of("the", "a", "zzzzzz", text.substring(1000, 1030).split("\n")[0])) {
+			assertEquals(Arrays.stream(text.split("\n", -1)).filter(line -> line.contains(pattern)).toList(),
+					decompressor.grep(pattern), pattern);
+		}
+		assertThrows(IllegalArgumentException.class, () -> decompressor.grep("a\nb"));
+	}
+
+	@Test
+	void testBlockCache() {
+		BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_WEIGHT);
+		Decompressor decompressor = new Decompressor(compressed, null, cache);
+		assertEquals(text.substring(5000, 9000), decompressor.read(5000, 4000));
+		final var cold = cache.getStatistics();
+		assertEquals(0, cold.hitCount());
+		assertEquals(cold.missCount(), cold.blockCount());
+		assertEquals(text.substring(5000, 9000), decompressor.read(5000, 4000));
+		assertEquals(cold.missCount(), cache.getStatistics().hitCount());
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length,
+				decompressor.transferTo(Channels.newChannel(new ByteArrayOutputStream())));
+		assertEquals(List.of(text.indexOf("the") + 0L), decompressor.search("the").subList(0, 1));
+		final var warm = cache.getStatistics();
+		assertEquals(warm.missCount(), warm.blockCount());
+		assertEquals(0, warm.evictionCount());
+		assertTrue(warm.hitRatio() > 0.5);
+		cache.clear();
+		assertEquals(0, cache.getStatistics().weight());
+	}
+
+	@Test
+	void testBlockCacheEviction() {
+		BlockCache cache = new BlockCache(4 * BLOCK_SIZE * Character.BYTES);
+		Decompressor decompressor = new Decompressor(compressed, null, cache);
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length,
+				decompressor.transferTo(Channels.newChannel(new ByteArrayOutputStream())));
+		final var statistics = cache.getStatistics();
+		assertTrue(statistics.evictionCount() > 0);
+		assertTrue(statistics.weight() <= 4 * BLOCK_SIZE * Character.BYTES);
+		assertEquals(statistics.missCount() - statistics.evictionCount(), statistics.blockCount());
+	}
+
+	@Test
+	void testBlockCacheFileChange() throws IOException {
+		final Path source = directory.resolve("changing.txt");
+		final String changing = directory.resolve("changing.data").toString();
+		final FileTime time = FileTime.fromMillis(System.currentTimeMillis());
+		Files.writeString(source, "first version, first version, first version");
+		new Compressor(source.toString()).compress(changing);
+		Files.setLastModifiedTime(Path.of(changing), time);
+		BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_WEIGHT);
+		assertEquals("first", new Decompressor(changing, null, cache).read(0, 5));
+		Files.writeString(source, "second version, second version, second version");
+		new Compressor(source.toString()).compress(changing);
+		Files.setLastModifiedTime(Path.of(changing), time);
+		assertEquals("second", new Decompressor(changing, null, cache).read(0, 6));
+		assertEquals(0, cache.getStatistics().hitCount());
+	}
+
+	@Test
+	void testDecompressTo() throws IOException {
+		final Path target = directory.resolve("parallel.txt");
+		for (var threads : new int[] { 1, 4 }) {
+			Decompressor decompressor = new Decompressor(compressed);
+			final long byteCount = decompressor.decompressTo(target.toString(), threads);
+			assertEquals(Files.size(target), byteCount);
+			assertEquals(text, Files.readString(target));
+			assertEquals(text.length(), decompressor.getMetrics().charCount());
+			assertEquals(byteCount, decompressor.getMetrics().bytesOut());
+		}
+	}
+
+	@Test
+	void testDecompressToSplitSurrogates() throws IOException {
+		final Path source = directory.resolve("emoji.txt");
+		final String emojiCompressed = directory.resolve("emoji.data").toString();
+		final Path target = directory.resolve("emoji-parallel.txt");
+		final String emoji = "smile \uD83D\uDE00 and \uD83D\uDE80 rocket, ".repeat(300);
+		for (var charset : List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16)) {
+			Files.writeString(source, emoji, charset);
+			new Compressor(source.toString(), CompressionOptions.DEFAULT.withBlockSize(1001).withCharset(charset))
+					.compress(emojiCompressed);
+			new Decompressor(emojiCompressed).decompressTo(target.toString(), 3);
+			assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target), charset.name());
+		}
+	}
+
+	@Test
+	void testDecompressToByteLevel() throws IOException {
+		final Path source = directory.resolve("source.bin");
+		final String binaryCompressed = directory.resolve("binary.data").toString();
+		final Path target = directory.resolve("binary-parallel.bin");
+		byte[] data = new byte[50000];
+		Random random = new Random(7);
+		for (int index = 0; index < data.length; index++) {
+			data[index] = (byte) (index % 1000 < 500 ? random.nextInt(256) : data[index - 500]);
+		}
+		Files.write(source, data);
+		new Compressor(source.toString(), CompressionOptions.DEFAULT.withBlockSize(4096).withByteLevel(true))
+				.compress(binaryCompressed);
+		assertEquals(data.length, new Decompressor(binaryCompressed).decompressTo(target.toString(), 4));
+		assertArrayEquals(data, Files.readAllBytes(target));
+	}
+
+}
@@ -0,0 +1,95 @@
+package luxoft.ch.compression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import luxoft.ch.compression.format.SharedDictionaryFile;
+import luxoft.ch.compression.model.SharedDictionary;
+import luxoft.ch.compression.tool.CompressionLevel;
+import luxoft.ch.compression.tool.CompressionOptions;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+import luxoft.ch.compression.tool.DictionaryTrainer;
+
+class SharedDictionaryTest {
+
+	@TempDir
+	static Path directory;
+
+	private static SharedDictionary dictionary;
+
+	@BeforeAll
+	static void train() throws IOException {
+		Random random = new Random(11);
+		List<String> samples = new ArrayList<>();
+		for (int index = 0; index < 200; index++) {
+			samples.add(writeRecord("sample" + index, random).toString());
+		}
+		dictionary = new DictionaryTrainer().train(samples);
+	}
+
+	private static Path writeRecord(String name, Random random) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int line = 0; line < 20; line++) {
+			builder.append("{\"timestamp\": \"2024-05-%02dT10:%02d:00Z\", ".formatted(random.nextInt(28) + 1,
+					random.nextInt(60)));
+			builder.append("\"service\": \"payment-gateway\", \"level\": \"%s\", ".formatted(
+					random.nextBoolean() ? "INFO" : "WARN"));
+			builder.append("\"message\": \"request processed for customer %d\"}\n".formatted(random.nextInt(100000)));
+		}
+		final Path file = directory.resolve(name + ".json");
+		Files.writeString(file, builder);
+		return file;
+	}
+
+	@Test
+	void testSmallDocument() throws IOException {
+		final Path source = writeRecord("document", new Random(5));
+		final String plain = directory.resolve("plain.data").toString();
+		final String shared = directory.resolve("shared.data").toString();
+		final String decompressed = directory.resolve("decompressed.json").toString();
+		new Compressor(source.toString()).compress(plain);
+		new Compressor(source.toString(), CompressionOptions.DEFAULT.withDictionary(dictionary)).compress(shared);
+		assertTrue(Files.size(Path.of(shared)) < Files.size(Path.of(plain)));
+
+		Decompressor decompressor = new Decompressor(shared, dictionary);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertEquals(Files.readString(source), Files.readString(Path.of(decompressed)));
+		assertThrows(CompressionException.class, () -> new Decompressor(shared).decompress());
+	}
+
+	@Test
+	void testFastLevel() throws IOException {
+		final Path source = writeRecord("fast", new Random(9));
+		final String shared = directory.resolve("fast.data").toString();
+		final String decompressed = directory.resolve("fast.json").toString();
+		new Compressor(source.toString(),
+				CompressionOptions.DEFAULT.withDictionary(dictionary).withLevel(CompressionLevel.FAST)).compress(shared);
+		Decompressor decompressor = new Decompressor(shared, dictionary);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		assertEquals(Files.readString(source), Files.readString(Path.of(decompressed)));
+	}
+
+	@Test
+	void testSaveAndLoad() throws IOException {
+		final String fileName = directory.resolve("dictionary.data").toString();
+		SharedDictionaryFile.save(dictionary, fileName);
+		SharedDictionary loaded = SharedDictionaryFile.load(fileName);
+		assertEquals(dictionary.getId(), loaded.getId());
+		assertEquals(dictionary.size(), loaded.size());
+		assertThrows(CompressionException.class, () -> SharedDictionaryFile.load("sample.txt"));
+	}
+
+}
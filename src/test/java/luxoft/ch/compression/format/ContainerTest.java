@@ -0,0 +1,129 @@
+package luxoft.ch.compression.format;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import luxoft.ch.compression.CompressionException;
+import luxoft.ch.compression.tool.CompressionOptions;
+import luxoft.ch.compression.tool.Compressor;
+import luxoft.ch.compression.tool.Decompressor;
+
+class ContainerTest {
+
+	@TempDir
+	Path directory;
+
+	private String roundTrip(String sourceFileName) {
+		final String compressed = directory.resolve("compressed.data").toString();
+		final String decompressed = directory.resolve("decompressed.txt").toString();
+		Compressor compressor = new Compressor(sourceFileName);
+		compressor.compress();
+		compressor.save(compressed);
+		Decompressor decompressor = new Decompressor(compressed);
+		decompressor.decompress();
+		decompressor.save(decompressed);
+		return decompressed;
+	}
+
+	@Test
+	void testLargePositions() throws IOException {
+		final String decompressed = roundTrip("real-sample.txt");
+		assertArrayEquals(Files.readAllBytes(Paths.get("real-sample.txt")), Files.readAllBytes(Paths.get(decompressed)));
+	}
+
+	@Test
+	void testManyEntries() throws IOException {
+		final Path source = directory.resolve("source.txt");
+		StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < 1000; index++) {
+			builder.append("repeated line of the log ").append(index % 7).append('\n');
+		}
+		Files.writeString(source, builder);
+		final String decompressed = roundTrip(source.toString());
+		assertEquals(builder.toString(), Files.readString(Paths.get(decompressed)));
+	}
+
+	@Test
+	void testNotContainer() {
+		Decompressor decompressor = new Decompressor("sample.txt");
+		assertThrows(CompressionException.class, decompressor::decompress);
+	}
+
+	@Test
+	void testUnsupportedHeader() throws IOException {
+		final Path compressed = directory.resolve("flags.data");
+		new Compressor("real-sample.txt").compress(compressed.toString());
+		byte[] data = Files.readAllBytes(compressed);
+		data[Integer.BYTES + 1] |= 0x40;
+		Files.write(compressed, data);
+		assertThrows(CompressionException.class, new Decompressor(compressed.toString())::decompress);
+
+		data[Integer.BYTES + 1] &= ~0x40;
+		data[Integer.BYTES + 1] |= Container.BYTE_LEVEL_FLAG;
+		Files.write(compressed, data);
+		assertThrows(CompressionException.class, new Decompressor(compressed.toString())::decompress);
+
+		data[Integer.BYTES + 1] &= ~Container.BYTE_LEVEL_FLAG;
+		assertEquals(Container.VERSION, data[Integer.BYTES]);
+		data[Integer.BYTES] = Container.VERSION + 1;
+		Files.write(compressed, data);
+		assertThrows(CompressionException.class, new Decompressor(compressed.toString())::decompress);
+	}
+
+	@Test
+	void testVerify() throws IOException {
+		final Path compressed = directory.resolve("verified.data");
+		Compressor compressor = new Compressor("real-sample.txt", CompressionOptions.DEFAULT.withBlockSize(8192));
+		compressor.compress(compressed.toString());
+		Decompressor decompressor = new Decompressor(compressed.toString());
+		assertEquals(compressor.getMetrics().blockCount(), decompressor.verify());
+
+		byte[] data = Files.readAllBytes(compressed);
+		data[data.length / 2] ^= 0x20;
+		Files.write(compressed, data);
+		assertThrows(CompressionException.class, decompressor::verify);
+		assertThrows(CompressionException.class, decompressor::decompress);
+
+		data[data.length / 2] ^= 0x20;
+		Files.write(compressed, Arrays.copyOf(data, data.length / 2));
+		assertThrows(CompressionException.class, decompressor::verify);
+	}
+
+	@Test
+	void testVerifyIndexCharCount() throws IOException {
+		final Path compressed = directory.resolve("index.data");
+		new Compressor("real-sample.txt", CompressionOptions.DEFAULT.withBlockSize(8192))
+				.compress(compressed.toString());
+		byte[] data = Files.readAllBytes(compressed);
+		final int lastCharCountEnd = data.length - Container.INDEX_TRAILER_SIZE;
+		data[lastCharCountEnd - 1]++;
+		data[lastCharCountEnd - Container.INDEX_ENTRY_SIZE - 1]--;
+		Files.write(compressed, data);
+		assertThrows(CompressionException.class, new Decompressor(compressed.toString())::verify);
+	}
+
+	@Test
+	void testUnfinishedAppend() throws IOException {
+		final Path compressed = directory.resolve("appended.data");
+		new Compressor("real-sample.txt", CompressionOptions.DEFAULT.withBlockSize(8192))
+				.compress(compressed.toString());
+		final byte[] original = Files.readAllBytes(compressed);
+		final int blockCount = new Decompressor(compressed.toString()).verify();
+		ContainerWriter writer = ContainerWriter.append(compressed.toString(), blockCount - 1, false,
+				StandardCharsets.UTF_8, null, false, null);
+		assertTrue(Files.size(compressed) < original.length);
+		writer.close();
+		assertArrayEquals(original, Files.readAllBytes(compressed));
+		assertEquals(blockCount, new Decompressor(compressed.toString()).verify());
+	}
+
+}
@@ -0,0 +1,31 @@
+package luxoft.ch.compression.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class DictionaryTest {
+
+	@Test
+	void testTokenIdsByTotalSpaceReversed() throws IOException {
+		Dictionary dictionary = new Dictionary();
+		dictionary.initialize(new StringReader(Files.readString(Paths.get("In a grove.txt"), StandardCharsets.UTF_8)));
+		dictionary.growLargerTokens();
+		final TokenTable tokens = dictionary.getTokenTable();
+		final int[] expected = IntStream.range(0, tokens.size()).filter(tokenId -> tokens.getLength(tokenId) >= 3)
+				.boxed().sorted(Comparator.<Integer>comparingInt(tokens::getTotalSpace).reversed()
+						.thenComparing(tokens::compareTokens))
+				.mapToInt(Integer::intValue).toArray();
+		assertTrue(expected.length > 100);
+		assertArrayEquals(expected, dictionary.getTokenIdsByTotalSpaceReversed(3));
+	}
+
+}
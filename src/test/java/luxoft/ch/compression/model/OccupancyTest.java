@@ -0,0 +1,74 @@
+package luxoft.ch.compression.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class OccupancyTest {
+
+	@Test
+	void testWordBoundaries() {
+		Occupancy occupancy = new Occupancy();
+		occupancy.occupy(63, 63);
+		assertFalse(occupancy.isFree(63, 63));
+		assertTrue(occupancy.isFree(0, 62));
+		assertTrue(occupancy.isFree(64, 64));
+		assertFalse(occupancy.isFree(60, 64));
+
+		occupancy.occupy(64, 64);
+		assertFalse(occupancy.isFree(64, 64));
+		assertTrue(occupancy.isFree(65, 127));
+		assertFalse(occupancy.isFree(64, 127));
+
+		occupancy.occupy(128, 191);
+		assertTrue(occupancy.isFree(65, 127));
+		assertFalse(occupancy.isFree(127, 128));
+		assertFalse(occupancy.isFree(191, 192));
+		assertTrue(occupancy.isFree(192, 255));
+	}
+
+	@Test
+	void testSeveralWords() {
+		Occupancy occupancy = new Occupancy();
+		occupancy.occupy(100, 300);
+		assertTrue(occupancy.isFree(0, 99));
+		assertTrue(occupancy.isFree(301, 1000));
+		for (int position = 100; position <= 300; position++) {
+			assertFalse(occupancy.isFree(position, position));
+		}
+		assertFalse(occupancy.isFree(0, 1000));
+		assertFalse(occupancy.isFree(150, 250));
+	}
+
+	@Test
+	void testBeyondCapacity() {
+		Occupancy occupancy = new Occupancy();
+		final int far = 1024 * 64 * 3 + 5;
+		assertTrue(occupancy.isFree(far, far + 200));
+		assertTrue(occupancy.isFree(0, far));
+		occupancy.occupy(far, far + 200);
+		assertFalse(occupancy.isFree(far + 200, far + 300));
+		assertFalse(occupancy.isFree(0, far));
+		assertTrue(occupancy.isFree(0, far - 1));
+	}
+
+	@Test
+	void testZeroLength() {
+		Occupancy occupancy = new Occupancy();
+		occupancy.occupy(64, 63);
+		occupancy.occupy(0, -1);
+		assertTrue(occupancy.isFree(0, 1000));
+		occupancy.occupy(10, 20);
+		assertTrue(occupancy.isFree(15, 14));
+		assertTrue(occupancy.isFree(0, -1));
+	}
+
+	@Test
+	void testClear() {
+		Occupancy occupancy = new Occupancy();
+		occupancy.occupy(0, 127);
+		occupancy.clear();
+		assertTrue(occupancy.isFree(0, 127));
+	}
+
+}
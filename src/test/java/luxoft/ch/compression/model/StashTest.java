@@ -0,0 +1,73 @@
+package luxoft.ch.compression.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import luxoft.ch.compression.CompressionException;
+
+class StashTest {
+
+	private static List<String> referencedTokens(Stash stash) {
+		List<String> tokens = new ArrayList<>();
+		stash.getReferencedTokensIterator().forEachRemaining(tokens::add);
+		return tokens;
+	}
+
+	@Test
+	void testLookups() {
+		Stash stash = new Stash();
+		stash.add("ab", List.of(10, 40));
+		stash.add("xyz", List.of(0, 20, 1 << 20));
+		assertEquals("xyz", stash.findTokenByStartPosition(0));
+		assertEquals("ab", stash.findTokenByStartPosition(10));
+		assertEquals("xyz", stash.findTokenByStartPosition(20));
+		assertEquals("ab", stash.findTokenByStartPosition(40));
+		assertEquals("xyz", stash.findTokenByStartPosition(1 << 20));
+		assertEquals(List.of("xyz", "ab", "xyz", "ab", "xyz"), referencedTokens(stash));
+		assertThrows(CompressionException.class, () -> stash.findTokenByStartPosition(11));
+	}
+
+	@Test
+	void testMergedEntries() {
+		Stash stash = new Stash();
+		stash.add("ab", List.of(10, 40));
+		stash.add("cd", List.of(20));
+		assertEquals(List.of("ab", "cd", "ab"), referencedTokens(stash));
+		stash.add("ab", List.of(0, 30));
+		assertEquals("ab", stash.findTokenByStartPosition(0));
+		assertEquals("ab", stash.findTokenByStartPosition(30));
+		assertEquals("cd", stash.findTokenByStartPosition(20));
+		assertEquals(List.of("ab", "ab", "cd", "ab", "ab"), referencedTokens(stash));
+		assertEquals(5, stash.getStatistics().entryCount());
+	}
+
+	@Test
+	void testRebuiltAfterMutation() {
+		Stash stash = new Stash();
+		stash.add("ab", List.of(10));
+		assertEquals("ab", stash.findTokenByStartPosition(10));
+		assertThrows(CompressionException.class, () -> stash.findTokenByStartPosition(5));
+		stash.add("cd", List.of(5));
+		assertEquals("cd", stash.findTokenByStartPosition(5));
+		assertEquals(List.of("cd", "ab"), referencedTokens(stash));
+	}
+
+	@Test
+	void testCleared() {
+		Stash stash = new Stash();
+		stash.add("ab", List.of(10, 40));
+		assertEquals("ab", stash.findTokenByStartPosition(40));
+		stash.clear();
+		assertFalse(stash.getReferencedTokensIterator().hasNext());
+		assertThrows(CompressionException.class, () -> stash.findTokenByStartPosition(40));
+		assertTrue(stash.isTokenEntryMayBeApplied(10, 11));
+		stash.add("cd", List.of(40));
+		assertEquals("cd", stash.findTokenByStartPosition(40));
+		assertEquals(List.of("cd"), referencedTokens(stash));
+	}
+
+}
@@ -0,0 +1,117 @@
+package luxoft.ch.compression.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TokenDiscoveryTest {
+
+	private final TokenDiscovery reference = new GrowingTokenDiscovery();
+	private final TokenDiscovery suffixArray = new SuffixArrayTokenDiscovery();
+
+	private void assertSameTokens(CharSequence buffer) {
+		assertEquals(reference.discover(buffer).toMap(), suffixArray.discover(buffer).toMap());
+	}
+
+	@Test
+	void testSample() throws IOException {
+		assertSameTokens(Files.readString(Paths.get("sample.txt"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testText() throws IOException {
+		assertSameTokens(Files.readString(Paths.get("In a grove.txt"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testRealSample() throws IOException {
+		assertSameTokens(Files.readString(Paths.get("real-sample.txt"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testDegenerate() {
+		assertSameTokens("");
+		assertSameTokens("a");
+		assertSameTokens("aaaaaaaaaaaaaaaaaaaaaaaa");
+		assertSameTokens("abababababababababcabcabcab");
+	}
+
+	@Test
+	void testRandom() {
+		Random random = new Random(11);
+		for (int round = 0; round < 50; round++) {
+			StringBuilder builder = new StringBuilder();
+			final int length = random.nextInt(500);
+			final int alphabet = 1 + random.nextInt(6);
+			for (int index = 0; index < length; index++) {
+				builder.append((char) ('a' + random.nextInt(alphabet)));
+			}
+			assertSameTokens(builder);
+		}
+	}
+
+	@Test
+	void testMaxTokenLength() throws IOException {
+		final DiscoveryLimits limits = DiscoveryLimits.UNLIMITED.withMaxTokenLength(5);
+		final String text = Files.readString(Paths.get("In a grove.txt"), StandardCharsets.UTF_8);
+		for (var buffer : new String[] { text, "aaaaaaaaaaaaaaaaaaaaaaaa", "abababababababababcabcabcab" }) {
+			final var tokens = new GrowingTokenDiscovery(limits).discover(buffer).toMap();
+			assertEquals(tokens, new SuffixArrayTokenDiscovery(limits).discover(buffer).toMap());
+			assertTrue(tokens.keySet().stream().allMatch(token -> token.length() <= 5));
+		}
+	}
+
+	@Test
+	void testLongRepeat() {
+		Random random = new Random(5);
+		StringBuilder builder = new StringBuilder();
+		for (int index = 0; index < 4000; index++) {
+			builder.append((char) ('a' + random.nextInt(26)));
+		}
+		final String buffer = builder.toString().repeat(3);
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertSameTokens(buffer));
+	}
+
+	@Test
+	void testBudgets() throws IOException {
+		final String text = Files.readString(Paths.get("In a grove.txt"), StandardCharsets.UTF_8);
+		final var unlimited = reference.discover(text).toMap();
+		final var oneRound = new GrowingTokenDiscovery(DiscoveryLimits.UNLIMITED.withMaxRounds(1)).discover(text)
+				.toMap();
+		assertNotEquals(unlimited, oneRound);
+		assertTrue(oneRound.values().stream().allMatch(entries -> entries.size() >= 2));
+		final var noMemory = new GrowingTokenDiscovery(DiscoveryLimits.UNLIMITED.withMemoryBudget(1)).discover(text)
+				.toMap();
+		assertTrue(noMemory.keySet().stream().allMatch(token -> token.length() == 2));
+	}
+
+	@Test
+	void testSuffixArrayBudgets() throws IOException {
+		final String text = Files.readString(Paths.get("In a grove.txt"), StandardCharsets.UTF_8);
+		final var unlimited = new SuffixArrayTokenDiscovery().discover(text).toMap();
+		for (int rounds = 1; rounds <= 5; rounds++) {
+			final var limits = DiscoveryLimits.UNLIMITED.withMaxRounds(rounds);
+			assertEquals(2 + rounds, limits.maxLengthAfterRounds());
+			final var limited = new SuffixArrayTokenDiscovery(limits).discover(text).toMap();
+			assertNotEquals(unlimited, limited);
+			assertEquals(2 + rounds, limited.keySet().stream().mapToInt(String::length).max().orElse(0));
+			assertEquals(new SuffixArrayTokenDiscovery(DiscoveryLimits.UNLIMITED.withMaxTokenLength(2 + rounds))
+					.discover(text).toMap(), limited);
+		}
+		assertEquals(4, DiscoveryLimits.UNLIMITED.withMaxRounds(5).withMaxTokenLength(4).maxLengthAfterRounds());
+		final var noMemory = new SuffixArrayTokenDiscovery(DiscoveryLimits.UNLIMITED.withMemoryBudget(1))
+				.discover(text).toMap();
+		assertEquals(1, noMemory.size());
+		final var noTime = new SuffixArrayTokenDiscovery(DiscoveryLimits.UNLIMITED.withTimeBudget(Duration.ofNanos(1)))
+				.discover(text).toMap();
+		assertTrue(noTime.isEmpty());
+	}
+
+}
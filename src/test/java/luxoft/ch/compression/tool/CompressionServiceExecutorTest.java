@@ -0,0 +1,40 @@
+package luxoft.ch.compression.tool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.jupiter.api.Test;
+
+class CompressionServiceExecutorTest {
+
+	private static final int FIRST_VIRTUAL_THREAD_VERSION = 21;
+
+	@Test
+	void testFixedPoolFallback() {
+		assumeTrue(Runtime.version().feature() < FIRST_VIRTUAL_THREAD_VERSION);
+		ExecutorService executor = CompressionService.newExecutor(3);
+		try {
+			ThreadPoolExecutor pool = assertInstanceOf(ThreadPoolExecutor.class, executor);
+			assertEquals(3, pool.getCorePoolSize());
+			assertEquals(3, pool.getMaximumPoolSize());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testVirtualThreads() throws Exception {
+		assumeTrue(Runtime.version().feature() >= FIRST_VIRTUAL_THREAD_VERSION);
+		ExecutorService executor = CompressionService.newExecutor(3);
+		try {
+			assertEquals(Boolean.TRUE,
+					executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}